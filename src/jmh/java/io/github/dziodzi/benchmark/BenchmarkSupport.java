@@ -0,0 +1,27 @@
+package io.github.dziodzi.benchmark;
+
+import java.lang.reflect.Field;
+
+/**
+ * Helpers for wiring services outside of the Spring context in benchmarks.
+ */
+final class BenchmarkSupport {
+
+    static final String SIGNING_KEY = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9eyJzdWIiOiIxMjM0NTY3ODkwIiwibmFtZSI6IkpvaG4gRG9lIiwiaWF0IjoxNTE2MjM5MDIyfQSflKxwRJSMeKKF2QT4fwpMeJf36POk6yJVadQssw5c";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Sets a field that Spring would normally inject with {@code @Value}.
+     */
+    static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+}
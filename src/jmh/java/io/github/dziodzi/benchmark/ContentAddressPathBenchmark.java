@@ -0,0 +1,55 @@
+package io.github.dziodzi.benchmark;
+
+import io.github.dziodzi.service.FileImageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Destination path resolution of {@code FileImageStore}: the shard path computed for every upload,
+ * and the layout check the storage migration does for every image row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentAddressPathBenchmark {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Param({"1", "2", "3"})
+    private int shardDepth;
+
+    private FileImageStore storage;
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        storage = new FileImageStore(null, null, new SimpleMeterRegistry(), "/var/lib/isd/images", shardDepth, 2);
+        stored = storage.pathFor(HASH, "image/png").toString();
+    }
+
+    @Benchmark
+    public Path pathFor() {
+        return storage.pathFor(HASH, "image/png");
+    }
+
+    @Benchmark
+    public boolean owns() {
+        return storage.owns(stored);
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.dziodzi.benchmark;
+
+import io.github.dziodzi.tools.LogExecutionTime;
+import io.github.dziodzi.tools.LoggingAspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of {@link LoggingAspect} on classes annotated with {@link LogExecutionTime}:
+ * the same trivial method called directly and through a proxy advised by the aspect.
+ * Logging goes to a no-op appender at INFO level (see {@code src/jmh/resources/logback.xml}), so the
+ * measured cost covers the advice and the creation of the log event but not console I/O.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingAspectBenchmark {
+
+    @LogExecutionTime
+    public static class Target {
+        public int add(int a, int b) {
+            return a + b;
+        }
+    }
+
+    private Target direct;
+    private Target advised;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        direct = new Target();
+        AspectJProxyFactory factory = new AspectJProxyFactory(new Target());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new LoggingAspect());
+        advised = factory.getProxy();
+    }
+
+    @Benchmark
+    public int direct() {
+        return direct.add(value++, 1);
+    }
+
+    @Benchmark
+    public int advised() {
+        return advised.add(value++, 1);
+    }
+}
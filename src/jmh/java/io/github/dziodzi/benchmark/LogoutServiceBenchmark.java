@@ -0,0 +1,69 @@
+package io.github.dziodzi.benchmark;
+
+import io.github.dziodzi.service.LogoutService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revocation lookup done for every authenticated request, with growing numbers of revoked tokens.
+ * Tokens are JWT-sized strings, so hashing the full token is part of the measured cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LogoutServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int revokedTokens;
+
+    private LogoutService logoutService;
+    private String revokedToken;
+    private String activeToken;
+
+    @Setup
+    public void setUp() {
+        logoutService = new LogoutService();
+        for (int i = 0; i < revokedTokens; i++) {
+            logoutService.invalidateToken(token());
+        }
+        revokedToken = token();
+        logoutService.invalidateToken(revokedToken);
+        activeToken = token();
+    }
+
+    @Benchmark
+    public boolean revokedTokenLookup() {
+        return logoutService.isTokenInvalidated(new String(revokedToken));
+    }
+
+    @Benchmark
+    public boolean activeTokenLookup() {
+        return logoutService.isTokenInvalidated(new String(activeToken));
+    }
+
+    /**
+     * A token of realistic length; a fresh String per lookup avoids measuring a cached hash code,
+     * as the filter gets a new header string on every request.
+     */
+    private static String token() {
+        return "eyJhbGciOiJIUzI1NiJ9." + UUID.randomUUID() + UUID.randomUUID() + UUID.randomUUID()
+                + "." + UUID.randomUUID();
+    }
+}
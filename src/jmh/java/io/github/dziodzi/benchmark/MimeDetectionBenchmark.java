@@ -0,0 +1,73 @@
+package io.github.dziodzi.benchmark;
+
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tika MIME detection of uploads of typical image sizes: on the 4 KiB head the ingestor sniffs,
+ * and on the whole upload as a stream, which is what a naive implementation would do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MimeDetectionBenchmark {
+
+    private static final int HEAD_SIZE = 4096;
+
+    @Param({"png", "jpg"})
+    private String format;
+
+    @Param({"65536", "1048576", "5242880"})
+    private int size;
+
+    private final Tika tika = new Tika();
+    private byte[] image;
+    private byte[] head;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage picture = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int x = 0; x < picture.getWidth(); x++) {
+            for (int y = 0; y < picture.getHeight(); y++) {
+                picture.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(picture, format, encoded);
+        image = Arrays.copyOf(encoded.toByteArray(), size);
+        head = Arrays.copyOf(image, HEAD_SIZE);
+    }
+
+    @Benchmark
+    public String detectHead() {
+        return tika.detect(head);
+    }
+
+    @Benchmark
+    public String detectStream() throws IOException {
+        return tika.detect(new ByteArrayInputStream(image));
+    }
+}
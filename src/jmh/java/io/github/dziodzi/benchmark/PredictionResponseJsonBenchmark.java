@@ -0,0 +1,60 @@
+package io.github.dziodzi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the model server's prediction JSON, as {@code NeuralNetworkClient} does for every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PredictionResponseJsonBenchmark {
+
+    private static final byte[] JSON = ("{\"class\": 1, \"class_description\": \"fake\", "
+            + "\"fake_probability\": 0.9731, \"image_name\": \"0f8fad5b-d9cb-469f-a165-70867728950e_photo.png\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper sharedMapper;
+    private ObjectReader reader;
+
+    @Setup
+    public void setUp() {
+        sharedMapper = new ObjectMapper();
+        reader = sharedMapper.readerFor(PredictionResponse.class);
+    }
+
+    @Benchmark
+    public PredictionResponse sharedMapperFromStream() throws IOException {
+        return sharedMapper.readValue(new ByteArrayInputStream(JSON), PredictionResponse.class);
+    }
+
+    @Benchmark
+    public PredictionResponse objectReaderFromBytes() throws IOException {
+        return reader.readValue(JSON);
+    }
+
+    @Benchmark
+    public PredictionResponse newMapperPerCall() throws IOException {
+        return new ObjectMapper().readValue(JSON, PredictionResponse.class);
+    }
+}
@@ -1,14 +1,110 @@
 package io.github.dziodzi.config;
 
+import io.github.dziodzi.tools.RequestTimeout;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class AppConfig {
 
+    @Value("${custom.neural-network.http.client:apache}")
+    private String clientType;
+
+    @Value("${custom.neural-network.http.http2:false}")
+    private boolean http2;
+
+    @Value("${custom.neural-network.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${custom.neural-network.http.connect-timeout-ms:1000}")
+    private long connectTimeoutMs;
+
+    @Value("${custom.neural-network.http.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${custom.neural-network.http.pool-timeout-ms:500}")
+    private long poolTimeoutMs;
+
+    @Value("${custom.neural-network.http.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    /**
+     * RestTemplate used for neural network calls. By default it runs on a pooled Apache HttpClient
+     * that keeps HTTP/1.1 connections alive between calls and publishes pool metrics.
+     * With {@code custom.neural-network.http.client=jdk} it uses the JDK HttpClient instead,
+     * optionally negotiating HTTP/2. Per-call timeouts set with {@link RequestTimeout} are applied
+     * by the Apache client only.
+     */
+    @Bean
+    public RestTemplate restTemplate(ClientHttpRequestFactory neuralNetworkRequestFactory) {
+        return new RestTemplate(neuralNetworkRequestFactory);
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public ClientHttpRequestFactory neuralNetworkRequestFactory(MeterRegistry meterRegistry) {
+        if ("jdk".equalsIgnoreCase(clientType)) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+            factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            return factory;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "neural-network").bindTo(meterRegistry);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeoutMs, TimeUnit.MILLISECONDS))
+                .build();
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setHttpContextFactory((method, uri) -> {
+            Duration timeout = RequestTimeout.current();
+            if (timeout == null) {
+                return null;
+            }
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.copy(requestConfig)
+                    .setResponseTimeout(Timeout.of(timeout))
+                    .build());
+            return context;
+        });
+        return factory;
     }
-}
\ No newline at end of file
+}
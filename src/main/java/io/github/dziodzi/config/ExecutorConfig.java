@@ -0,0 +1,116 @@
+package io.github.dziodzi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableScheduling
+public class ExecutorConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${custom.upload.jobs.pool-size:4}")
+    private int uploadJobPoolSize;
+
+    @Value("${custom.upload.jobs.queue-capacity:100}")
+    private int uploadJobQueueCapacity;
+
+    @Value("${custom.upload.batch.parallelism:4}")
+    private int batchUploadParallelism;
+
+    @Value("${custom.upload.batch.queue-capacity:500}")
+    private int batchUploadQueueCapacity;
+
+    @Value("${custom.neural-network.batching.dispatch-threads:2}")
+    private int batchDispatchThreads;
+
+    @Value("${custom.neural-network.hedging.threads:32}")
+    private int hedgeThreads;
+
+    @Value("${storage.thumbnails.pool-size:2}")
+    private int thumbnailPoolSize;
+
+    @Value("${storage.thumbnails.queue-capacity:200}")
+    private int thumbnailQueueCapacity;
+
+    /**
+     * Bounded worker pool running inference and persistence for asynchronous uploads.
+     * Submissions beyond the queue capacity are rejected instead of piling up.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor uploadJobExecutor() {
+        ThreadPoolTaskExecutor executor = boundedExecutor("upload-job-", uploadJobPoolSize, uploadJobQueueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    /**
+     * Worker pool limiting how many files of batch uploads are verified in parallel.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor batchUploadExecutor() {
+        return boundedExecutor("batch-upload-", batchUploadParallelism, batchUploadQueueCapacity);
+    }
+
+    /**
+     * Worker pool sending collected prediction batches to the neural network.
+     * When all workers are busy, the collector sends the batch itself, which throttles batch collection.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor batchDispatchExecutor() {
+        ThreadPoolTaskExecutor executor = boundedExecutor("nn-batch-", batchDispatchThreads, batchDispatchThreads);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Worker pool running hedged neural network calls. It has no queue: when all workers are busy
+     * the call is sent from the caller's thread without hedging.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor hedgeExecutor() {
+        return boundedExecutor("nn-hedge-", hedgeThreads, 0);
+    }
+
+    /**
+     * Worker pool decoding images and writing thumbnails, kept small so that thumbnail generation
+     * cannot take the CPU away from request handling.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor thumbnailExecutor() {
+        return boundedExecutor("thumbnail-", thumbnailPoolSize, thumbnailQueueCapacity);
+    }
+
+    /**
+     * Single worker running storage garbage collection started from the admin API, so the request returns
+     * while the run goes on. It has no queue, as only one run may be in progress at a time.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor storageGcExecutor() {
+        return boundedExecutor("storage-gc-", 1, 0);
+    }
+
+    /**
+     * Creates a fixed-size pool with a bounded queue. With {@code spring.threads.virtual.enabled}
+     * the workers are virtual threads, so blocking HTTP and JDBC calls release their carrier thread
+     * while the pool size still bounds the concurrency.
+     */
+    private ThreadPoolTaskExecutor boundedExecutor(String threadNamePrefix, int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        if (virtualThreads) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+        }
+        return executor;
+    }
+}
@@ -1,13 +1,60 @@
 package io.github.dziodzi.controller;
 
 import io.github.dziodzi.controller.api.AdminAPI;
+import io.github.dziodzi.entity.exchange.AnalyticsRebuildReport;
+import io.github.dziodzi.entity.exchange.StorageGcReport;
+import io.github.dziodzi.entity.exchange.VerificationAnalytics;
+import io.github.dziodzi.exception.InvalidBodyException;
+import io.github.dziodzi.service.StorageGarbageCollector;
+import io.github.dziodzi.service.VerificationAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
 @RestController
+@RequiredArgsConstructor
 public class AdminController implements AdminAPI {
 
+    private final StorageGarbageCollector storageGarbageCollector;
+    private final VerificationAnalyticsService verificationAnalyticsService;
+
     @Override
     public String index() {
         return "OK";
     }
-}
\ No newline at end of file
+
+    @Override
+    public ResponseEntity<Void> collectStorageGarbage(boolean dryRun) {
+        storageGarbageCollector.start(dryRun);
+        return ResponseEntity.accepted().location(URI.create("/admin/storage/gc")).build();
+    }
+
+    @Override
+    public StorageGcReport getStorageGarbageReport() {
+        return storageGarbageCollector.getLastReport();
+    }
+
+    @Override
+    public VerificationAnalytics getVerificationAnalytics(String from, String to, Long userId, String granularity) {
+        LocalDateTime end = to == null ? LocalDateTime.now() : parseDate(to);
+        LocalDateTime start = from == null ? end.minusDays(30) : parseDate(from);
+        return verificationAnalyticsService.query(start, end, userId, granularity);
+    }
+
+    @Override
+    public AnalyticsRebuildReport rebuildVerificationAnalytics() {
+        return verificationAnalyticsService.rebuild();
+    }
+
+    private static LocalDateTime parseDate(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new InvalidBodyException("Invalid date, expected ISO-8601 such as 2026-10-18T12:00:00: " + value);
+        }
+    }
+}
@@ -2,15 +2,33 @@ package io.github.dziodzi.controller;
 
 import io.github.dziodzi.controller.api.ImageAPI;
 import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.exchange.PageResponse;
 import io.github.dziodzi.entity.exchange.ResponseWrapper;
+import io.github.dziodzi.entity.exchange.UploadJobResponse;
+import io.github.dziodzi.exception.InvalidBodyException;
+import io.github.dziodzi.service.BatchUploadService;
+import io.github.dziodzi.service.ImageDownloadService;
 import io.github.dziodzi.service.ImageService;
 import io.github.dziodzi.service.ResultSenderService;
+import io.github.dziodzi.service.ThumbnailService;
+import io.github.dziodzi.service.UploadJobService;
+import io.github.dziodzi.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -20,7 +38,12 @@ import java.util.List;
 public class ImageController implements ImageAPI {
 
     private final ImageService imageService;
+    private final ImageDownloadService imageDownloadService;
+    private final ThumbnailService thumbnailService;
     private final ResultSenderService resultSender;
+    private final UploadJobService uploadJobService;
+    private final BatchUploadService batchUploadService;
+    private final UserService userService;
 
     @PostMapping("/add")
     public ResponseEntity<Image> addImage(@RequestBody Image image) {
@@ -44,9 +67,33 @@ public class ImageController implements ImageAPI {
         return ResponseEntity.ok(imageService.getById(id));
     }
 
+    @GetMapping("/{id}/content")
+    public void getImageContent(@PathVariable String id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        imageDownloadService.download(id, request, response);
+    }
+
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<Resource> getImageThumbnail(@PathVariable String id, @RequestParam("size") int size,
+                                                      WebRequest webRequest) throws IOException {
+        Image image = imageService.getById(id);
+        String etag = thumbnailService.etagOf(image, size);
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofDays(30)).cachePrivate();
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+        Resource thumbnail = thumbnailService.read(image, size);
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .contentType(MediaTypeFactory.getMediaType(thumbnail).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .body(thumbnail);
+    }
+
     @GetMapping("/all")
-    public ResponseEntity<List<Image>> getAllImages() {
-        return ResponseEntity.ok(imageService.getAll());
+    public ResponseEntity<PageResponse<Image>> getAllImages(@RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(imageService.getPage(cursor, size));
     }
 
     @GetMapping("/exists/{id}")
@@ -62,15 +109,34 @@ public class ImageController implements ImageAPI {
         } else if (uploadDate != null) {
             return ResponseEntity.ok(imageService.getByUploadDateRange(LocalDateTime.parse(uploadDate), LocalDateTime.now()));
         } else {
-            return ResponseEntity.ok(imageService.getAll());
+            throw new InvalidBodyException("Search needs a filepath or an uploadDate, use /images/all to list all images page by page");
         }
     }
 
 
     @PostMapping("/upload")
     public ResponseEntity<ResponseWrapper> handleImageUpload(@RequestParam("file") MultipartFile file,
+                                                             @RequestParam(value = "async", defaultValue = "false") boolean async,
                                                              HttpServletRequest request) {
-        ResponseWrapper result = resultSender.handleImageUpload(file, request);
+        ResponseWrapper result = async
+                ? uploadJobService.handleImageUpload(file)
+                : resultSender.handleImageUpload(file, request);
+        if (result.getData() instanceof UploadJobResponse job) {
+            return ResponseEntity.status(result.getStatusCode())
+                    .location(URI.create("/images/jobs/" + job.getJobId()))
+                    .body(result);
+        }
         return ResponseEntity.status(result.getStatusCode()).body(result);
     }
+
+    @PostMapping("/upload/batch")
+    public ResponseEntity<ResponseWrapper> handleBatchImageUpload(@RequestParam("files") List<MultipartFile> files) {
+        ResponseWrapper result = batchUploadService.handleBatchUpload(files);
+        return ResponseEntity.status(result.getStatusCode()).body(result);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<UploadJobResponse> getUploadJob(@PathVariable String id) {
+        return ResponseEntity.ok(uploadJobService.getJob(id, userService.getCurrentUser()));
+    }
 }
@@ -2,8 +2,9 @@ package io.github.dziodzi.controller;
 
 import io.github.dziodzi.controller.api.VerificationHistoryAPI;
 import io.github.dziodzi.entity.VerificationHistory;
-import io.github.dziodzi.entity.Image;
-import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.entity.exchange.VerificationHistoryFilter;
+import io.github.dziodzi.exception.InvalidBodyException;
 import io.github.dziodzi.service.VerificationHistoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -11,7 +12,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.format.DateTimeParseException;
 
 @RestController
 @RequiredArgsConstructor
@@ -41,37 +42,55 @@ public class VerificationHistoryController implements VerificationHistoryAPI {
 
     @Override
     @GetMapping("/all")
-    public ResponseEntity<List<VerificationHistory>> getAllVerificationHistories() {
-        return ResponseEntity.ok(verificationHistoryService.findByDateRange(LocalDateTime.MIN, LocalDateTime.MAX));
+    public ResponseEntity<PageResponse<VerificationHistory>> getAllVerificationHistories(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(verificationHistoryService.getPage(cursor, size));
     }
 
     @Override
     @GetMapping("/search")
-    public ResponseEntity<List<VerificationHistory>> searchVerificationHistories(
+    public ResponseEntity<PageResponse<VerificationHistory>> searchVerificationHistories(
             @RequestParam(required = false) String imageId,
-            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Long userId,
             @RequestParam(required = false) String verificationDate,
-            @RequestParam(required = false) String result) {
-
-        List<VerificationHistory> histories = verificationHistoryService.findByDateRange(
-                verificationDate != null ? LocalDateTime.parse(verificationDate) : LocalDateTime.MIN,
-                LocalDateTime.now()
-        );
+            @RequestParam(required = false) String verificationDateTo,
+            @RequestParam(required = false) String result,
+            @RequestParam(required = false) Integer predictedClass,
+            @RequestParam(required = false) Double minFakeProbability,
+            @RequestParam(required = false) Double maxFakeProbability,
+            @RequestParam(required = false) String modelVersion,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        VerificationHistoryFilter filter = VerificationHistoryFilter.builder()
+                .imageId(imageId)
+                .userId(userId)
+                .from(parseDate(verificationDate))
+                .to(parseDate(verificationDateTo))
+                .result(result)
+                .predictedClass(predictedClass)
+                .minFakeProbability(checkProbability(minFakeProbability))
+                .maxFakeProbability(checkProbability(maxFakeProbability))
+                .modelVersion(modelVersion)
+                .build();
+        return ResponseEntity.ok(verificationHistoryService.search(filter, cursor, size));
+    }
 
-        if (imageId != null) {
-            Image image = new Image();
-            histories = verificationHistoryService.findByImage(image);
+    private static LocalDateTime parseDate(String value) {
+        if (value == null) {
+            return null;
         }
-
-        if (userId != null) {
-            User user = new User();
-            histories = verificationHistoryService.findByUser(user);
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new InvalidBodyException("Invalid date, expected ISO-8601 such as 2026-10-18T12:00:00: " + value);
         }
+    }
 
-        if (result != null) {
-            histories = verificationHistoryService.findByResult(result);
+    private static Double checkProbability(Double value) {
+        if (value != null && !(value >= 0 && value <= 1)) {
+            throw new InvalidBodyException("Fake probability must be between 0 and 1: " + value);
         }
-
-        return ResponseEntity.ok(histories);
+        return value;
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,15 @@
 package io.github.dziodzi.controller.api;
 
+import io.github.dziodzi.entity.exchange.AnalyticsRebuildReport;
+import io.github.dziodzi.entity.exchange.StorageGcReport;
+import io.github.dziodzi.entity.exchange.VerificationAnalytics;
+import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @Tag(name = "Admin", description = "Admin management API")
 @RequestMapping("/admin")
@@ -10,4 +17,26 @@ public interface AdminAPI {
 
     @GetMapping("/health")
     String index();
-}
\ No newline at end of file
+
+    @Operation(summary = "Start deleting unreferenced stored images and reporting images whose content is missing",
+            description = "Returns 202 at once. The report is served by GET /admin/storage/gc when the run is done.")
+    @PostMapping("/storage/gc")
+    ResponseEntity<Void> collectStorageGarbage(@RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun);
+
+    @Operation(summary = "Get the report of the last finished storage garbage collection run")
+    @GetMapping("/storage/gc")
+    StorageGcReport getStorageGarbageReport();
+
+    @Operation(summary = "Get verification counts, fake rates and the fake probability histogram of a time range, for all users or one user")
+    @GetMapping("/analytics/verifications")
+    VerificationAnalytics getVerificationAnalytics(
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity);
+
+    @Operation(summary = "Recompute the verification analytics rollups from the verification history",
+            description = "Recomputes all hours before the current one. Only safe while a single instance is running.")
+    @PostMapping("/analytics/rebuild")
+    AnalyticsRebuildReport rebuildVerificationAnalytics();
+}
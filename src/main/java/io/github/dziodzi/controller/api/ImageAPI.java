@@ -2,15 +2,21 @@ package io.github.dziodzi.controller.api;
 
 import io.github.dziodzi.entity.Image;
 import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.entity.exchange.UploadJobResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.validation.Valid;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.List;
 
 @Tag(name = "Image", description = "Image operations API")
@@ -37,22 +43,46 @@ public interface ImageAPI {
     @ResponseBody
     ResponseEntity<Image> getImageById(@PathVariable("id") String id);
 
-    @Operation(summary = "Get all images")
+    @Operation(summary = "Download the stored image, with support for Range requests and conditional GETs")
+    @GetMapping("/{id}/content")
+    void getImageContent(@PathVariable("id") String id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException;
+
+    @Operation(summary = "Get a thumbnail of the image, with the longest side of the given size in pixels")
+    @GetMapping("/{id}/thumbnail")
+    ResponseEntity<Resource> getImageThumbnail(@PathVariable("id") String id, @RequestParam("size") int size,
+                                               WebRequest webRequest) throws IOException;
+
+    @Operation(summary = "Get images page by page, newest first")
     @GetMapping("/all")
     @ResponseBody
-    ResponseEntity<List<Image>> getAllImages();
+    ResponseEntity<PageResponse<Image>> getAllImages(@RequestParam(value = "cursor", required = false) String cursor,
+                                                     @RequestParam(value = "size", defaultValue = "50") int size);
 
     @Operation(summary = "Check if an image exists by ID")
     @GetMapping("/exists/{id}")
     @ResponseBody
     ResponseEntity<Boolean> imageExists(@PathVariable("id") String id);
 
-    @Operation(summary = "Search images by file path or upload date")
+    @Operation(summary = "Search images by file path or upload date",
+            description = "One of filepath or uploadDate is required. Use /images/all to list all images.")
     @GetMapping("/search")
     @ResponseBody
     ResponseEntity<List<Image>> searchImages(@RequestParam(required = false) String filepath,
                                              @RequestParam(required = false) String uploadDate);
 
+    @Operation(summary = "Upload an image for verification, optionally as an asynchronous job")
     @PostMapping("/upload")
-    ResponseEntity<?> handleImageUpload(@RequestParam("file") MultipartFile file, HttpServletRequest request);
+    ResponseEntity<?> handleImageUpload(@RequestParam("file") MultipartFile file,
+                                        @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                        HttpServletRequest request);
+
+    @Operation(summary = "Upload several images in one request and verify them in parallel")
+    @PostMapping("/upload/batch")
+    ResponseEntity<?> handleBatchImageUpload(@RequestParam("files") List<MultipartFile> files);
+
+    @Operation(summary = "Get the status and result of an asynchronous upload job")
+    @GetMapping("/jobs/{id}")
+    @ResponseBody
+    ResponseEntity<UploadJobResponse> getUploadJob(@PathVariable("id") String id);
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package io.github.dziodzi.controller.api;
 
 import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.PageResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,7 +9,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
-import java.util.List;
 
 @Tag(name = "Verification History", description = "Verification history operations API")
 @RequestMapping("/verification-history")
@@ -29,17 +29,26 @@ public interface VerificationHistoryAPI {
     @ResponseBody
     ResponseEntity<VerificationHistory> getVerificationHistoryById(@PathVariable("id") String id);
 
-    @Operation(summary = "Get all verification history entries")
+    @Operation(summary = "Get verification history entries page by page, newest first")
     @GetMapping("/all")
     @ResponseBody
-    ResponseEntity<List<VerificationHistory>> getAllVerificationHistories();
+    ResponseEntity<PageResponse<VerificationHistory>> getAllVerificationHistories(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size);
 
-    @Operation(summary = "Search verification histories by image ID, user ID, date, or result")
+    @Operation(summary = "Search verification history by any combination of image ID, user ID, date range, result, predicted class, fake probability range and model version, newest first")
     @GetMapping("/search")
     @ResponseBody
-    ResponseEntity<List<VerificationHistory>> searchVerificationHistories(
+    ResponseEntity<PageResponse<VerificationHistory>> searchVerificationHistories(
             @RequestParam(required = false) String imageId,
-            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Long userId,
             @RequestParam(required = false) String verificationDate,
-            @RequestParam(required = false) String result);
-}
\ No newline at end of file
+            @RequestParam(required = false) String verificationDateTo,
+            @RequestParam(required = false) String result,
+            @RequestParam(required = false) Integer predictedClass,
+            @RequestParam(required = false) Double minFakeProbability,
+            @RequestParam(required = false) Double maxFakeProbability,
+            @RequestParam(required = false) String modelVersion,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size);
+}
@@ -30,4 +30,7 @@ public class Image {
 
     @Column(name = "upload_date", nullable = false)
     private LocalDateTime uploadDate;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package io.github.dziodzi.entity;
+
+public enum UploadJobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+}
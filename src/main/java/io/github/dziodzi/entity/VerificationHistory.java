@@ -40,4 +40,16 @@ public class VerificationHistory {
 
     @Column(name = "result", nullable = false)
     private String result;
+
+    @Column(name = "predicted_class")
+    private Integer predictedClass;
+
+    @Column(name = "class_description")
+    private String classDescription;
+
+    @Column(name = "fake_probability")
+    private Double fakeProbability;
+
+    @Column(name = "model_version")
+    private String modelVersion;
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package io.github.dziodzi.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Verification counts of one user in one hour and one fake probability bucket.
+ */
+@Entity
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(VerificationRollup.Key.class)
+@Table(name = "verification_rollup")
+public class VerificationRollup {
+
+    @Id
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "probability_bucket", nullable = false)
+    private Integer probabilityBucket;
+
+    @Column(name = "verifications", nullable = false)
+    private long verifications;
+
+    @Column(name = "fakes", nullable = false)
+    private long fakes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDateTime bucketStart;
+        private Long userId;
+        private Integer probabilityBucket;
+    }
+}
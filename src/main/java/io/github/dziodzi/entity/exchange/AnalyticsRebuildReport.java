@@ -0,0 +1,16 @@
+package io.github.dziodzi.entity.exchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsRebuildReport {
+    private long rowsDeleted;
+    private long rowsWritten;
+    private long durationMs;
+}
@@ -0,0 +1,18 @@
+package io.github.dziodzi.entity.exchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchUploadItemResponse {
+    private String fileName;
+    private int statusCode;
+    private String message;
+    private String imageId;
+    private PredictionResponse result;
+}
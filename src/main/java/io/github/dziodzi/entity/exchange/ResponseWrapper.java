@@ -16,6 +16,10 @@ public class ResponseWrapper {
         return new ResponseWrapper(200, "Success", data);
     }
 
+    public static ResponseWrapper accepted(Object data) {
+        return new ResponseWrapper(202, "Accepted", data);
+    }
+
     public static ResponseWrapper error(int statusCode, String message) {
         return new ResponseWrapper(statusCode, message, null);
     }
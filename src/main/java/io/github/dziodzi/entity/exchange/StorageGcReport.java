@@ -0,0 +1,28 @@
+package io.github.dziodzi.entity.exchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageGcReport {
+    private boolean dryRun;
+    private long objectsScanned;
+    private long orphansFound;
+    private long orphanBytes;
+    private long orphansDeleted;
+    private long temporaryFilesFound;
+    private long temporaryFilesDeleted;
+    private long rowsScanned;
+    private long rowsMissingContent;
+    private List<String> missingImageIds;
+    private long durationMs;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,32 @@
+package io.github.dziodzi.entity.exchange;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.github.dziodzi.entity.UploadJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadJobResponse {
+    private String jobId;
+    private String imageId;
+    private UploadJobStatus status;
+    private PredictionResponse result;
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+
+    @JsonIgnore
+    private String username;
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == UploadJobStatus.DONE || status == UploadJobStatus.FAILED;
+    }
+}
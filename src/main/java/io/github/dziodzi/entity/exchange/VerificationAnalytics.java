@@ -0,0 +1,46 @@
+package io.github.dziodzi.entity.exchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VerificationAnalytics {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Long userId;
+    private String granularity;
+    private long verifications;
+    private long fakes;
+    private double fakeRate;
+    private List<Long> probabilityHistogram;
+    private List<Point> series;
+    private List<UserRate> users;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private LocalDateTime start;
+        private long verifications;
+        private long fakes;
+        private double fakeRate;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserRate {
+        private Long userId;
+        private long verifications;
+        private long fakes;
+        private double fakeRate;
+    }
+}
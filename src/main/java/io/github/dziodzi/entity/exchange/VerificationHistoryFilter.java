@@ -0,0 +1,24 @@
+package io.github.dziodzi.entity.exchange;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VerificationHistoryFilter {
+    private String imageId;
+    private Long userId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String result;
+    private Integer predictedClass;
+    private Double minFakeProbability;
+    private Double maxFakeProbability;
+    private String modelVersion;
+}
@@ -1,19 +1,61 @@
 package io.github.dziodzi.repository;
 
 import io.github.dziodzi.entity.Image;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, String> {
 
-    Optional<Image> findByFilepath(String filepath);
+    List<Image> findByFilepath(String filepath);
+
+    Optional<Image> findFirstByFilepath(String filepath);
+
+    boolean existsByFilepath(String filepath);
+
+    boolean existsByFilepathAndUploadDateAfter(String filepath, LocalDateTime date);
 
     List<Image> findByUploadDateBetween(LocalDateTime startDate, LocalDateTime endDate);
 
     List<Image> findByFilepathContainingIgnoreCase(String partialPath);
+
+    long countByFilepath(String filepath);
+
+    List<Image> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    @Query("select i from Image i order by i.uploadDate desc, i.id desc")
+    List<Image> findNewest(Pageable pageable);
+
+    /**
+     * Returns the images after the given position in the newest-first order. The redundant
+     * {@code uploadDate <= :date} bound lets the database scan the (upload_date, id) index from that position.
+     */
+    @Query("select i from Image i where i.uploadDate <= :date and (i.uploadDate < :date or i.id < :id)"
+            + " order by i.uploadDate desc, i.id desc")
+    List<Image> findNewestAfter(@Param("date") LocalDateTime date, @Param("id") String id, Pageable pageable);
+
+    @Query("select distinct i.filepath from Image i where i.filepath in :filepaths")
+    Set<String> findReferencedFilepaths(@Param("filepaths") Collection<String> filepaths);
+
+    @Query("select i.filepath from Image i where i.contentHash is not null and i.filepath not like :excluded"
+            + " group by i.filepath having max(i.uploadDate) < :cutoff order by max(i.uploadDate)")
+    List<String> findLocationsUploadedBefore(@Param("cutoff") LocalDateTime cutoff,
+                                             @Param("excluded") String excludedPattern,
+                                             Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.filepath = :to where i.filepath = :from")
+    int relocate(@Param("from") String from, @Param("to") String to);
 }
\ No newline at end of file
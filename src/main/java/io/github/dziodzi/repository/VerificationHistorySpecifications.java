@@ -0,0 +1,107 @@
+package io.github.dziodzi.repository;
+
+import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.VerificationHistoryFilter;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Building blocks of verification history searches. Every supplied filter becomes one predicate of a single
+ * query, and absent filters add nothing, so any combination is served by one statement that can use the
+ * (user_id, verification_date), (image_id), (result, verification_date), (fake_probability, verification_date)
+ * and (predicted_class, verification_date) indexes.
+ */
+public final class VerificationHistorySpecifications {
+
+    /**
+     * Newest first, with the ID breaking ties so that keyset pages never skip or repeat rows.
+     */
+    public static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("verificationDate"), Sort.Order.desc("id"));
+
+    private VerificationHistorySpecifications() {
+    }
+
+    public static Specification<VerificationHistory> matching(VerificationHistoryFilter filter) {
+        return Specification.where(withImageAndUser())
+                .and(imageId(filter.getImageId()))
+                .and(userId(filter.getUserId()))
+                .and(verifiedFrom(filter.getFrom()))
+                .and(verifiedBefore(filter.getTo()))
+                .and(result(filter.getResult()))
+                .and(predictedClass(filter.getPredictedClass()))
+                .and(fakeProbabilityAtLeast(filter.getMinFakeProbability()))
+                .and(fakeProbabilityAtMost(filter.getMaxFakeProbability()))
+                .and(modelVersion(filter.getModelVersion()));
+    }
+
+    /**
+     * Rows after the given position in the {@link #NEWEST_FIRST} order. The redundant
+     * {@code verificationDate <= date} bound lets the database scan the date index from that position.
+     */
+    public static Specification<VerificationHistory> after(LocalDateTime date, String id) {
+        return (root, query, builder) -> builder.and(
+                builder.lessThanOrEqualTo(root.get("verificationDate"), date),
+                builder.or(builder.lessThan(root.get("verificationDate"), date),
+                        builder.lessThan(root.get("id"), id)));
+    }
+
+    /**
+     * Loads the image and the user in the same query instead of one query per row.
+     */
+    private static Specification<VerificationHistory> withImageAndUser() {
+        return (root, query, builder) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("image");
+                root.fetch("user");
+            }
+            return null;
+        };
+    }
+
+    private static Specification<VerificationHistory> imageId(String imageId) {
+        return imageId == null ? null
+                : (root, query, builder) -> builder.equal(root.get("image").get("id"), imageId);
+    }
+
+    private static Specification<VerificationHistory> userId(Long userId) {
+        return userId == null ? null
+                : (root, query, builder) -> builder.equal(root.get("user").get("id"), userId);
+    }
+
+    private static Specification<VerificationHistory> verifiedFrom(LocalDateTime from) {
+        return from == null ? null
+                : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("verificationDate"), from);
+    }
+
+    private static Specification<VerificationHistory> verifiedBefore(LocalDateTime to) {
+        return to == null ? null
+                : (root, query, builder) -> builder.lessThan(root.get("verificationDate"), to);
+    }
+
+    private static Specification<VerificationHistory> result(String result) {
+        return result == null ? null
+                : (root, query, builder) -> builder.equal(root.get("result"), result);
+    }
+
+    private static Specification<VerificationHistory> predictedClass(Integer predictedClass) {
+        return predictedClass == null ? null
+                : (root, query, builder) -> builder.equal(root.get("predictedClass"), predictedClass);
+    }
+
+    private static Specification<VerificationHistory> fakeProbabilityAtLeast(Double min) {
+        return min == null ? null
+                : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("fakeProbability"), min);
+    }
+
+    private static Specification<VerificationHistory> fakeProbabilityAtMost(Double max) {
+        return max == null ? null
+                : (root, query, builder) -> builder.lessThanOrEqualTo(root.get("fakeProbability"), max);
+    }
+
+    private static Specification<VerificationHistory> modelVersion(String modelVersion) {
+        return modelVersion == null ? null
+                : (root, query, builder) -> builder.equal(root.get("modelVersion"), modelVersion);
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.dziodzi.repository;
+
+import io.github.dziodzi.entity.VerificationRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VerificationRollupRepository extends JpaRepository<VerificationRollup, VerificationRollup.Key> {
+
+    /**
+     * Adds the given counts to a rollup row, creating it when it does not exist yet.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into verification_rollup"
+            + " (bucket_start, user_id, probability_bucket, verifications, fakes)"
+            + " values (:bucketStart, :userId, :probabilityBucket, :verifications, :fakes)"
+            + " on conflict (bucket_start, user_id, probability_bucket) do update set"
+            + " verifications = verification_rollup.verifications + excluded.verifications,"
+            + " fakes = verification_rollup.fakes + excluded.fakes")
+    int increment(@Param("bucketStart") LocalDateTime bucketStart,
+                  @Param("userId") Long userId,
+                  @Param("probabilityBucket") int probabilityBucket,
+                  @Param("verifications") long verifications,
+                  @Param("fakes") long fakes);
+
+    @Modifying
+    @Query("delete from VerificationRollup r where r.bucketStart < :cutoff")
+    int deleteBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Recomputes the rollup rows of the hours before the cutoff from the verification history. Expects those rows
+     * to be deleted.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into verification_rollup"
+            + " (bucket_start, user_id, probability_bucket, verifications, fakes)"
+            + " select date_trunc('hour', verification_date), user_id,"
+            + " least(cast(floor(fake_probability * :buckets) as integer), :buckets - 1),"
+            + " count(*), count(*) filter (where fake_probability >= :fakeThreshold)"
+            + " from verification_history where fake_probability is not null and verification_date < :cutoff"
+            + " group by 1, 2, 3")
+    int rebuildFromHistory(@Param("cutoff") LocalDateTime cutoff,
+                           @Param("buckets") int buckets,
+                           @Param("fakeThreshold") double fakeThreshold);
+
+    @Query("select r.bucketStart as bucketStart, r.probabilityBucket as probabilityBucket,"
+            + " sum(r.verifications) as verifications, sum(r.fakes) as fakes from VerificationRollup r"
+            + " where r.bucketStart >= :from and r.bucketStart < :to"
+            + " group by r.bucketStart, r.probabilityBucket")
+    List<Totals> sumByHour(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("select r.bucketStart as bucketStart, r.probabilityBucket as probabilityBucket,"
+            + " sum(r.verifications) as verifications, sum(r.fakes) as fakes from VerificationRollup r"
+            + " where r.userId = :userId and r.bucketStart >= :from and r.bucketStart < :to"
+            + " group by r.bucketStart, r.probabilityBucket")
+    List<Totals> sumByHourForUser(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                  @Param("userId") Long userId);
+
+    @Query("select r.userId as userId, sum(r.verifications) as verifications, sum(r.fakes) as fakes"
+            + " from VerificationRollup r where r.bucketStart >= :from and r.bucketStart < :to"
+            + " group by r.userId order by sum(r.fakes) desc, r.userId")
+    List<UserTotals> sumByUser(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to, Pageable pageable);
+
+    interface Totals {
+        LocalDateTime getBucketStart();
+
+        Integer getProbabilityBucket();
+
+        long getVerifications();
+
+        long getFakes();
+    }
+
+    interface UserTotals {
+        Long getUserId();
+
+        long getVerifications();
+
+        long getFakes();
+    }
+}
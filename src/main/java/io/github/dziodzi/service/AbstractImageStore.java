@@ -0,0 +1,162 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Reference counting shared by the image stores. References are the {@link Image} rows whose filepath is the
+ * location of the content, so copies of the same content in different stores or tiers are counted separately.
+ * Placing content and saving its row, as well as deleting a row and checking for remaining references,
+ * happen under a per-hash lock, so content is never freed while a new row for it is being saved.
+ * The lock is local to this instance. Locations the store does not own are never freed, since a row's filepath
+ * can be set to any path through {@code /images/update/{id}}.
+ */
+abstract class AbstractImageStore implements ImageStore {
+
+    static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final int LOCK_STRIPES = 64;
+
+    protected final ImageRepository imageRepository;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Counter deduplicated;
+
+    AbstractImageStore(ImageRepository imageRepository, MeterRegistry meterRegistry) {
+        this.imageRepository = imageRepository;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.deduplicated = Counter.builder("storage.deduplicated")
+                .description("Uploads whose content was already stored")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void release(Image image, Runnable unregister) {
+        String contentHash = image.getContentHash();
+        if (contentHash == null || !owns(image.getFilepath())) {
+            unregister.run();
+            return;
+        }
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            unregister.run();
+            freeIfUnreferenced(contentHash, image.getFilepath());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Places content under the lock of its hash and registers it, freeing it again if registering fails.
+     *
+     * @param contentHash the hash of the content
+     * @param place       stores the content unless it is already stored
+     * @param register    registers the stored content
+     */
+    protected <T> T placeAndRegister(String contentHash, Locked<StoredImage> place,
+                                     Function<StoredImage, T> register) throws IOException {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            StoredImage stored = place.call();
+            if (stored.deduplicated()) {
+                deduplicated.increment();
+            }
+            try {
+                return register.apply(stored);
+            } catch (RuntimeException e) {
+                freeIfUnreferenced(contentHash, stored.location());
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code action} while no reference to the content can be added or released.
+     */
+    protected <T> T withLock(String contentHash, Locked<T> action) throws IOException {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            return action.call();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the content under the lock of its hash when no {@link Image} row points to its location.
+     *
+     * @return whether the content was freed
+     */
+    boolean collect(String contentHash, String location) throws IOException {
+        return withLock(contentHash, () -> freeIfUnreferenced(contentHash, location));
+    }
+
+    /**
+     * Lists the stored content, for the {@link StorageGarbageCollector}. The stream must be closed.
+     */
+    abstract Stream<StoredObject> objects() throws IOException;
+
+    /**
+     * Lists temporary files that writes in progress or interrupted by a crash left behind. The stream must be closed.
+     */
+    abstract Stream<Path> temporaryFiles() throws IOException;
+
+    /**
+     * Frees the content when no {@link Image} row points to its location. Called with the lock of the hash held.
+     *
+     * @return whether the content was freed
+     */
+    protected boolean freeIfUnreferenced(String contentHash, String location) {
+        if (imageRepository.countByFilepath(location) > 0) {
+            return false;
+        }
+        free(contentHash, location);
+        return true;
+    }
+
+    /**
+     * Frees unreferenced content. Called with the lock of the hash held.
+     */
+    protected abstract void free(String contentHash, String location);
+
+    static String extension(String mimeType) {
+        if (mimeType == null || !mimeType.startsWith("image/")) {
+            return "";
+        }
+        String subtype = mimeType.substring("image/".length()).replaceAll("[^a-z0-9]", "");
+        return subtype.isEmpty() ? "" : "." + subtype;
+    }
+
+    private ReentrantLock lockFor(String contentHash) {
+        return locks[Math.floorMod(contentHash.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Stored content as listed by {@link #objects()}.
+     *
+     * @param modified when the content was last written, or later
+     */
+    record StoredObject(String contentHash, String location, long size, Instant modified) {
+    }
+
+    @FunctionalInterface
+    protected interface Locked<T> {
+        T call() throws IOException;
+    }
+}
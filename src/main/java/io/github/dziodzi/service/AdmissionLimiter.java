@@ -0,0 +1,221 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit for neural network calls.
+ * The limit follows a gradient of the observed latency: it grows while calls are as fast as the long-term
+ * baseline and shrinks when latency rises above it or the model server fails. Callers above the limit wait
+ * in a short bounded queue; when the queue is full or the wait times out, the call is shed with
+ * {@link TooManyRequestsException} instead of tying up a request thread.
+ */
+@Component
+public class AdmissionLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double BASELINE_WEIGHT = 0.02;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Counter rejections;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final double tolerance;
+
+    private double limit;
+    private double baselineRttNanos;
+    private int inFlight;
+    private int waiting;
+
+    public AdmissionLimiter(MeterRegistry meterRegistry,
+                            @Value("${custom.neural-network.admission.enabled:true}") boolean enabled,
+                            @Value("${custom.neural-network.admission.initial-limit:20}") int initialLimit,
+                            @Value("${custom.neural-network.admission.min-limit:2}") int minLimit,
+                            @Value("${custom.neural-network.admission.max-limit:200}") int maxLimit,
+                            @Value("${custom.neural-network.admission.max-queue:20}") int maxQueue,
+                            @Value("${custom.neural-network.admission.max-wait-ms:50}") long maxWaitMs,
+                            @Value("${custom.neural-network.admission.tolerance:2.0}") double tolerance) {
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.tolerance = tolerance;
+
+        Gauge.builder("nn.admission.limit", this, AdmissionLimiter::getLimit)
+                .description("Current adaptive concurrency limit for neural network calls")
+                .register(meterRegistry);
+        Gauge.builder("nn.admission.inflight", this, AdmissionLimiter::getInFlight)
+                .description("Neural network calls currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("nn.admission.waiting", this, AdmissionLimiter::getWaiting)
+                .description("Callers waiting for a neural network call slot")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("nn.admission.rejected")
+                .description("Neural network calls shed because the limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a neural network call once a slot under the current limit is available.
+     *
+     * @param call the call to run
+     * @param <T>  the call result type
+     * @return the call result
+     * @throws TooManyRequestsException if no slot becomes available within the wait time
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        acquire();
+        long start = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return call.get();
+        } catch (NeuralNetworkException e) {
+            dropped = e.getStatusCode() >= 500;
+            throw e;
+        } catch (RuntimeException e) {
+            dropped = true;
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    /**
+     * Sheds a call up front when {@link #execute} would reject it right now, because every slot is taken and the
+     * queue is full. Lets callers fail fast before expensive work such as storing an upload. A call that passes
+     * this check can still be shed by {@link #execute}.
+     *
+     * @throws TooManyRequestsException if the limiter is saturated
+     */
+    public void checkAdmission() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit && waiting >= maxQueue) {
+                throw reject();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (waiting >= maxQueue) {
+                throw reject();
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw reject();
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject();
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit / 2;
+            inFlight--;
+            updateLimit(rttNanos, dropped, saturated);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the limit towards {@code limit * baseline / sample + sqrt(limit)}: unchanged latency lets it grow
+     * by the queue allowance, latency above the tolerated baseline shrinks it and a failure halves the target.
+     * The limit only grows while at least half of it is in use, so an idle service does not inflate it.
+     */
+    private void updateLimit(long rttNanos, boolean dropped, boolean saturated) {
+        if (baselineRttNanos == 0) {
+            baselineRttNanos = rttNanos;
+        } else if (!dropped) {
+            baselineRttNanos += (rttNanos - baselineRttNanos) * BASELINE_WEIGHT;
+        }
+
+        double target = dropped
+                ? limit * 0.5
+                : limit * Math.max(0.5, Math.min(1.0, tolerance * baselineRttNanos / rttNanos)) + Math.sqrt(limit);
+        if (target > limit && !saturated) {
+            return;
+        }
+        double next = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    private TooManyRequestsException reject() {
+        rejections.increment();
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds((long) baselineRttNanos) + 1);
+        return new TooManyRequestsException("Neural network is saturated, try again later", retryAfter);
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.exchange.BatchUploadItemResponse;
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.entity.exchange.ResponseWrapper;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.github.dziodzi.exception.UserNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service for verifying many uploaded files in one request.
+ * Every file goes through the same pipeline as a single upload, with a bounded number of files
+ * processed in parallel. A failing file is reported in its own result and does not fail the batch.
+ * <p>
+ * Each request keeps at most {@code custom.upload.batch.request-parallelism} files in the shared worker pool and
+ * its queue at a time, so one large batch cannot fill the queue and turn away the files of every other request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchUploadService {
+
+    private final ResultSenderService resultSender;
+    private final AdmissionLimiter admissionLimiter;
+
+    @Qualifier("batchUploadExecutor")
+    private final ThreadPoolTaskExecutor batchUploadExecutor;
+
+    @Value("${custom.upload.batch.max-files:100}")
+    private int maxFiles;
+
+    @Value("${custom.upload.batch.request-parallelism:2}")
+    private int requestParallelism;
+
+    /**
+     * Verifies all uploaded files and returns one result per file, in upload order.
+     *
+     * @param files the uploaded files
+     * @return a wrapper holding the list of per-file results, or an error wrapper if the batch itself is invalid
+     */
+    public ResponseWrapper handleBatchUpload(List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            return ResponseWrapper.error(400, "No files were uploaded.");
+        }
+        if (files.size() > maxFiles) {
+            return ResponseWrapper.error(400, "Too many files in one batch, the limit is " + maxFiles);
+        }
+
+        User user;
+        try {
+            user = resultSender.getCurrentUser();
+        } catch (UserNotFoundException e) {
+            log.error(e.getMessage());
+            return ResponseWrapper.error(400, e.getMessage());
+        }
+
+        log.info("Processing batch of {} files for user {}", files.size(), user.getUsername());
+        Semaphore slots = new Semaphore(requestParallelism);
+        List<CompletableFuture<BatchUploadItemResponse>> results = files.stream()
+                .map(file -> submit(file, user, slots))
+                .toList();
+        return ResponseWrapper.success(results.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Queues one file once the request has a free slot, blocking the request thread until then.
+     */
+    private CompletableFuture<BatchUploadItemResponse> submit(MultipartFile file, User user, Semaphore slots) {
+        slots.acquireUninterruptibly();
+        try {
+            return CompletableFuture.supplyAsync(() -> process(file, user), batchUploadExecutor)
+                    .whenComplete((result, e) -> slots.release());
+        } catch (TaskRejectedException e) {
+            slots.release();
+            return CompletableFuture.completedFuture(
+                    error(file, 503, "Batch upload queue is full, try again later"));
+        }
+    }
+
+    private BatchUploadItemResponse process(MultipartFile file, User user) {
+        try {
+            admissionLimiter.checkAdmission();
+            Image savedImage = resultSender.storeImage(file);
+            PredictionResponse prediction;
+            try {
+                prediction = resultSender.verifyImage(savedImage, user);
+            } catch (TooManyRequestsException e) {
+                resultSender.discard(savedImage);
+                throw e;
+            }
+            return BatchUploadItemResponse.builder()
+                    .fileName(file.getOriginalFilename())
+                    .statusCode(200)
+                    .message("Success")
+                    .imageId(savedImage.getId())
+                    .result(prediction)
+                    .build();
+        } catch (IllegalArgumentException | IOException e) {
+            log.error("{}: {}", file.getOriginalFilename(), e.getMessage());
+            return error(file, 400, e.getMessage());
+        } catch (TooManyRequestsException e) {
+            log.warn("{}: {}", file.getOriginalFilename(), e.getMessage());
+            return error(file, 429, e.getMessage());
+        } catch (NeuralNetworkException e) {
+            log.error("{}: {}", file.getOriginalFilename(), e.getMessage());
+            return error(file, e.getStatusCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("{}: {}", file.getOriginalFilename(), e.getMessage());
+            return error(file, 500, e.getMessage());
+        }
+    }
+
+    private BatchUploadItemResponse error(MultipartFile file, int statusCode, String message) {
+        return BatchUploadItemResponse.builder()
+                .fileName(file.getOriginalFilename())
+                .statusCode(statusCode)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,347 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Neural network transport over long-lived TCP connections using {@link BinaryProtocol}.
+ * Each model server host gets a small pool of connections; every connection carries many requests
+ * at once, matched with their responses by correlation id, so a slow prediction does not block the
+ * ones sent after it. Broken connections fail their pending requests with 503 and are reopened on
+ * the next call.
+ * <p>
+ * Images are streamed from their resource into the connection, so they are not copied into memory first.
+ * Connections that received nothing for {@code custom.neural-network.binary.ping-interval-ms} get a PING, and are
+ * closed when the PONG does not arrive within another interval, so that a model server that hangs or a
+ * connection silently dropped by the network is noticed before the next requests time out on it.
+ */
+@Component
+@Slf4j
+public class BinaryNeuralNetworkTransport {
+
+    private final int port;
+    private final int connectionsPerHost;
+    private final int connectTimeoutMs;
+    private final long pingIntervalMs;
+    private final Map<String, Slot[]> pools = new ConcurrentHashMap<>();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+
+    public BinaryNeuralNetworkTransport(@Value("${custom.neural-network.binary.port:5002}") int port,
+                                        @Value("${custom.neural-network.binary.connections:4}") int connectionsPerHost,
+                                        @Value("${custom.neural-network.http.connect-timeout-ms:1000}") int connectTimeoutMs,
+                                        @Value("${custom.neural-network.binary.ping-interval-ms:15000}") long pingIntervalMs) {
+        this.port = port;
+        this.connectionsPerHost = connectionsPerHost;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.pingIntervalMs = pingIntervalMs;
+    }
+
+    /**
+     * Sends one image to the model server behind the given backend URL.
+     *
+     * @param backendUrl the backend URL; only its host is used, with the binary protocol port
+     * @param image      the image to classify
+     * @param timeout    how long to wait for the prediction
+     * @return the prediction
+     * @throws NeuralNetworkException with the status sent by the model server, 503 if the connection fails,
+     *                                or 504 if the prediction does not arrive in time
+     */
+    public PredictionResponse predict(String backendUrl, Resource image, Duration timeout) {
+        return await(send(backendUrl, image), timeout);
+    }
+
+    /**
+     * Sends several images at once on the same connection pool and waits for all predictions.
+     *
+     * @return the predictions in the same order as the images
+     */
+    public List<PredictionResponse> predictAll(String backendUrl, List<? extends Resource> images, Duration timeout) {
+        List<CompletableFuture<PredictionResponse>> futures = images.stream()
+                .map(image -> send(backendUrl, image))
+                .toList();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        return futures.stream()
+                .map(future -> await(future, Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))))
+                .toList();
+    }
+
+    /**
+     * Pings idle connections and closes those whose previous PING was not answered in time.
+     */
+    @Scheduled(fixedDelayString = "${custom.neural-network.binary.ping-interval-ms:15000}")
+    public void sendKeepalives() {
+        long now = System.currentTimeMillis();
+        pools.values().forEach(pool -> {
+            for (Slot slot : pool) {
+                Connection connection = slot.connection;
+                if (connection != null && !connection.isClosed()) {
+                    connection.keepalive(now, pingIntervalMs, nextCorrelationId.incrementAndGet());
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.values().forEach(pool -> {
+            for (Slot slot : pool) {
+                Connection connection = slot.connection;
+                if (connection != null) {
+                    connection.close(new IOException("Transport is shutting down"));
+                }
+            }
+        });
+        pools.clear();
+    }
+
+    private CompletableFuture<PredictionResponse> send(String backendUrl, Resource image) {
+        long length;
+        InputStream content;
+        try {
+            length = image.contentLength();
+            content = image.getInputStream();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read image " + image.getFilename() + ": " + e.getMessage(), e);
+        }
+        try {
+            if (BinaryProtocol.predictPayloadLength(image.getFilename(), length) > BinaryProtocol.MAX_PAYLOAD) {
+                throw new NeuralNetworkException("Image " + image.getFilename() + " of " + length
+                        + " bytes is too large for the binary protocol", 413);
+            }
+            Connection connection = connection(URI.create(backendUrl).getHost());
+            return connection.send(nextCorrelationId.incrementAndGet(), image.getFilename(), content, length);
+        } finally {
+            try {
+                content.close();
+            } catch (IOException ignored) {
+                // already sent or failed
+            }
+        }
+    }
+
+    private static PredictionResponse await(CompletableFuture<PredictionResponse> future, Duration timeout) {
+        try {
+            return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new NeuralNetworkException("Neural network did not answer within " + timeout.toMillis() + " ms", 504);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof NeuralNetworkException nn
+                    ? nn
+                    : new NeuralNetworkException("Neural network call failed: " + e.getCause().getMessage(), 503);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException("Interrupted while waiting for the neural network", 503);
+        }
+    }
+
+    /**
+     * Returns the connection of the next slot, reopening it if it is broken. Only the slot being reopened is
+     * locked while connecting, so a slow or unreachable model server delays the callers that picked that slot
+     * instead of every caller of the host.
+     */
+    private Connection connection(String host) {
+        Slot[] pool = pools.computeIfAbsent(host, key -> {
+            Slot[] slots = new Slot[connectionsPerHost];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+            return slots;
+        });
+        int index = Math.floorMod(nextConnection.getAndIncrement(), pool.length);
+        Slot slot = pool[index];
+        Connection connection = slot.connection;
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+        slot.lock.lock();
+        try {
+            connection = slot.connection;
+            if (connection == null || connection.isClosed()) {
+                connection = open(host, index);
+                slot.connection = connection;
+            }
+            return connection;
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    private Connection open(String host, int slot) {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            log.info("Opened binary neural network connection {} to {}:{}", slot, host, port);
+            return new Connection(socket, host + ":" + port + "-" + slot);
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing to release
+            }
+            throw new NeuralNetworkException("Neural network is unreachable: " + e.getMessage(), 503);
+        }
+    }
+
+    /**
+     * One position of a host's connection pool. Locks are used instead of monitors throughout, because a virtual
+     * thread blocked in a connect or a socket write while holding a monitor pins its carrier thread.
+     */
+    private static final class Slot {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Connection connection;
+    }
+
+    /**
+     * One multiplexed connection: writes are serialized by a lock, and a reader thread completes
+     * the pending requests as their responses arrive, in any order.
+     */
+    private static final class Connection {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Map<Integer, CompletableFuture<PredictionResponse>> pending = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+        private volatile long lastReceived = System.currentTimeMillis();
+        private volatile long pingSentAt;
+
+        private Connection(Socket socket, String name) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            Thread reader = new Thread(this::readResponses, "nn-binary-" + name);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Writes a PREDICT frame. A failure while reading the image leaves a partial frame behind, so it closes
+         * the connection just like a failing socket does.
+         */
+        private CompletableFuture<PredictionResponse> send(int correlationId, String filename, InputStream image,
+                                                           long length) {
+            CompletableFuture<PredictionResponse> future = new CompletableFuture<>();
+            future.whenComplete((result, error) -> pending.remove(correlationId));
+            pending.put(correlationId, future);
+            writeLock.lock();
+            try {
+                BinaryProtocol.writePredict(out, correlationId, filename, image, length);
+            } catch (IOException e) {
+                close(e);
+            } finally {
+                writeLock.unlock();
+            }
+            if (closed) {
+                future.completeExceptionally(new NeuralNetworkException("Neural network connection was closed", 503));
+            }
+            return future;
+        }
+
+        private void keepalive(long now, long interval, int correlationId) {
+            long sentAt = pingSentAt;
+            if (sentAt != 0 && now - sentAt >= interval) {
+                close(new IOException("Model server did not answer a PING within " + interval + " ms"));
+            } else if (sentAt == 0 && now - lastReceived >= interval) {
+                pingSentAt = now;
+                write(BinaryProtocol.PING, correlationId);
+            }
+        }
+
+        private void write(byte type, int correlationId) {
+            writeLock.lock();
+            try {
+                BinaryProtocol.writeFrame(out, type, correlationId, new byte[0]);
+            } catch (IOException e) {
+                close(e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void readResponses() {
+            try {
+                while (!closed) {
+                    BinaryProtocol.Frame frame = BinaryProtocol.readFrame(in);
+                    lastReceived = System.currentTimeMillis();
+                    if (frame.type() == BinaryProtocol.PONG) {
+                        pingSentAt = 0;
+                        continue;
+                    }
+                    if (frame.type() == BinaryProtocol.PING) {
+                        write(BinaryProtocol.PONG, frame.correlationId());
+                        continue;
+                    }
+                    CompletableFuture<PredictionResponse> future = pending.get(frame.correlationId());
+                    if (future == null) {
+                        continue;
+                    }
+                    switch (frame.type()) {
+                        case BinaryProtocol.PREDICTION -> future.complete(BinaryProtocol.decodePrediction(frame.payload()));
+                        case BinaryProtocol.ERROR -> future.completeExceptionally(BinaryProtocol.decodeError(frame.payload()));
+                        default -> future.completeExceptionally(new NeuralNetworkException(
+                                "Unexpected frame type " + frame.type() + " from neural network", 502));
+                    }
+                }
+            } catch (EOFException e) {
+                close(new IOException("Connection closed by the model server"));
+            } catch (IOException | RuntimeException e) {
+                close(e);
+            }
+        }
+
+        private void close(Exception cause) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!socket.isClosed()) {
+                log.warn("Binary neural network connection closed: {}", cause.getMessage());
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already broken
+            }
+            NeuralNetworkException failure = new NeuralNetworkException(
+                    "Neural network connection failed: " + cause.getMessage(), 503);
+            pending.values().forEach(future -> future.completeExceptionally(failure));
+        }
+    }
+}
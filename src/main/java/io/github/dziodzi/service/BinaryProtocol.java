@@ -0,0 +1,174 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Frames of the binary protocol between the backend and the model server.
+ * Every frame is a 12-byte big-endian header followed by the payload:
+ * {@code uint32 payload length, uint8 type, uint8 version, uint16 reserved, uint32 correlation id}.
+ * The full specification, including the Python struct formats, is in {@code docs/neural-network-binary-protocol.md}.
+ */
+public final class BinaryProtocol {
+
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+    public static final byte PREDICT = 1;
+    public static final byte PREDICTION = 2;
+    public static final byte ERROR = 3;
+    public static final byte PING = 4;
+    public static final byte PONG = 5;
+
+    public record Frame(byte type, int correlationId, byte[] payload) {
+    }
+
+    public record PredictRequest(String filename, byte[] image) {
+    }
+
+    private BinaryProtocol() {
+    }
+
+    public static void writeFrame(DataOutputStream out, byte type, int correlationId, byte[] payload) throws IOException {
+        writeHeader(out, type, correlationId, payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Writes a PREDICT frame, copying the image from the stream into the output so that the image is never
+     * held in memory as a whole. PREDICT payload: {@code uint16 filename length, filename (UTF-8), image bytes
+     * until the end of the payload}.
+     *
+     * @param imageLength the exact number of bytes the stream holds, see {@link #predictPayloadLength}
+     * @throws EOFException if the stream ends early; the frame is incomplete then and the connection unusable
+     */
+    public static void writePredict(DataOutputStream out, int correlationId, String filename, InputStream image,
+                                    long imageLength) throws IOException {
+        byte[] name = encodeFilename(filename);
+        writeHeader(out, PREDICT, correlationId, Math.toIntExact(2 + name.length + imageLength));
+        out.writeShort(name.length);
+        out.write(name);
+        byte[] buffer = new byte[8192];
+        long remaining = imageLength;
+        while (remaining > 0) {
+            int read = image.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Image ended " + remaining + " bytes before its announced length");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the payload length of a PREDICT frame, to be checked against {@link #MAX_PAYLOAD} before sending.
+     */
+    public static long predictPayloadLength(String filename, long imageLength) {
+        return 2 + encodeFilename(filename).length + imageLength;
+    }
+
+    private static void writeHeader(DataOutputStream out, byte type, int correlationId, int length) throws IOException {
+        out.writeInt(length);
+        out.writeByte(type);
+        out.writeByte(VERSION);
+        out.writeShort(0);
+        out.writeInt(correlationId);
+    }
+
+    /**
+     * Reads the next frame, blocking until it is complete.
+     *
+     * @throws java.io.EOFException if the peer closed the connection
+     * @throws IOException          if the frame is malformed or too large
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte type = in.readByte();
+        int version = in.readUnsignedByte();
+        in.readUnsignedShort();
+        int correlationId = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Frame payload of " + Integer.toUnsignedString(length) + " bytes is too large");
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, correlationId, payload);
+    }
+
+    private static byte[] encodeFilename(String filename) {
+        byte[] name = filename == null ? new byte[0] : filename.getBytes(StandardCharsets.UTF_8);
+        return name.length > 0xFFFF ? Arrays.copyOf(name, 0xFFFF) : name;
+    }
+
+    public static PredictRequest decodePredict(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        String filename = readString(buffer);
+        byte[] image = new byte[buffer.remaining()];
+        buffer.get(image);
+        return new PredictRequest(filename, image);
+    }
+
+    /**
+     * PREDICTION payload: {@code int32 class, float64 fake probability, uint16 description length, description (UTF-8)}.
+     */
+    public static byte[] encodePrediction(PredictionResponse prediction) {
+        byte[] description = prediction.getClassDescription() == null
+                ? new byte[0]
+                : prediction.getClassDescription().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + 8 + 2 + description.length)
+                .putInt(prediction.getPredictedClass())
+                .putDouble(prediction.getFakeProbability())
+                .putShort((short) description.length)
+                .put(description)
+                .array();
+    }
+
+    public static PredictionResponse decodePrediction(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        PredictionResponse prediction = new PredictionResponse();
+        prediction.setPredictedClass(buffer.getInt());
+        prediction.setFakeProbability(buffer.getDouble());
+        prediction.setClassDescription(readString(buffer));
+        return prediction;
+    }
+
+    /**
+     * ERROR payload: {@code uint16 status (HTTP semantics), message (UTF-8) until the end of the payload}.
+     */
+    public static byte[] encodeError(int status, String message) {
+        byte[] text = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + text.length)
+                .putShort((short) status)
+                .put(text)
+                .array();
+    }
+
+    public static NeuralNetworkException decodeError(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int status = Short.toUnsignedInt(buffer.getShort());
+        String message = new String(payload, 2, payload.length - 2, StandardCharsets.UTF_8);
+        return new NeuralNetworkException("Neural network failed with status " + status + ": " + message, status);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.dziodzi.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only resource over a byte buffer, typically a slice of a memory-mapped file.
+ * Every stream reads its own view of the buffer, so the resource can be read many times and concurrently.
+ */
+public class ByteBufferResource extends AbstractResource {
+
+    private final ByteBuffer content;
+    private final String filename;
+
+    public ByteBufferResource(ByteBuffer content, String filename) {
+        this.content = content.asReadOnlyBuffer();
+        this.filename = filename;
+    }
+
+    /**
+     * Returns a new view of the content, positioned at its start.
+     */
+    public ByteBuffer getByteBuffer() {
+        return content.duplicate();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer view = getByteBuffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(len, view.remaining());
+                view.get(b, off, count);
+                return count;
+            }
+
+            @Override
+            public long skip(long n) {
+                int count = (int) Math.max(0, Math.min(n, view.remaining()));
+                view.position(view.position() + count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    @Override
+    public byte[] getContentAsByteArray() {
+        byte[] bytes = new byte[content.remaining()];
+        getByteBuffer().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public long contentLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Byte buffer resource [" + filename + "]";
+    }
+}
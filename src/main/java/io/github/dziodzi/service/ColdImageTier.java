@@ -0,0 +1,226 @@
+package io.github.dziodzi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier of the {@link TieredImageStore}: gzip-compressed copies of rarely read images, one file per
+ * content hash in nested prefix directories of {@code storage.tiering.cold-directory}, which is meant to be
+ * on cheaper, slower disks. The location of a cold image is {@code cold:<content hash>.<extension>}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.tiering.enabled", havingValue = "true")
+public class ColdImageTier {
+
+    static final String LOCATION_PREFIX = "cold:";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path tempDirectory;
+    private final int compressionLevel;
+    private final DirectoryUsage usage;
+
+    public ColdImageTier(@Value("${storage.tiering.cold-directory:/store-cold}") String directory,
+                         @Value("${storage.tiering.compression-level:6}") int compressionLevel) {
+        this.root = Path.of(directory).toAbsolutePath().normalize();
+        this.tempDirectory = root.resolve(".tmp");
+        this.compressionLevel = compressionLevel;
+        this.usage = new DirectoryUsage(root, path -> owns(locationOf(path)));
+        usage.start();
+    }
+
+    /**
+     * Returns the cold location for the content stored under the given file name, e.g. {@code <hash>.png}.
+     */
+    String locationOf(String storedName) {
+        return LOCATION_PREFIX + storedName;
+    }
+
+    boolean owns(String location) {
+        return location != null && location.startsWith(LOCATION_PREFIX)
+                && AbstractImageStore.HASH.matcher(hashOf(location)).matches();
+    }
+
+    boolean contains(String location) {
+        return Files.exists(pathOf(location));
+    }
+
+    /**
+     * Compresses the content into the cold tier. The file becomes visible only once it is complete and
+     * flushed to disk, so a crash never leaves a truncated cold copy behind.
+     *
+     * @return the compressed size
+     */
+    long write(String location, Resource content) throws IOException {
+        Path target = pathOf(location);
+        Files.createDirectories(tempDirectory);
+        Path temp = tempDirectory.resolve(UUID.randomUUID().toString());
+        try {
+            try (InputStream in = content.getInputStream();
+                 OutputStream out = new LeveledGzipOutputStream(Files.newOutputStream(temp), compressionLevel)) {
+                in.transferTo(out);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        long size = Files.size(target);
+        usage.added(size);
+        return size;
+    }
+
+    Resource read(String location) throws IOException {
+        Path path = pathOf(location);
+        if (!Files.isRegularFile(path)) {
+            throw new NoSuchFileException(location);
+        }
+        return new GzipFileResource(path, location.substring(LOCATION_PREFIX.length()));
+    }
+
+    void delete(String location) {
+        Path path = pathOf(location);
+        try {
+            long size = Files.exists(path) ? Files.size(path) : 0;
+            if (Files.deleteIfExists(path)) {
+                usage.removed(size);
+                log.info("Deleted unreferenced cold content {}", location);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete unreferenced cold content {}: {}", location, e.getMessage());
+        }
+    }
+
+    ImageStore.Usage usage() {
+        return usage.snapshot();
+    }
+
+    /**
+     * Lists the cold copies. The stream must be closed.
+     */
+    Stream<AbstractImageStore.StoredObject> objects() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Stream.empty();
+        }
+        return Files.find(root, 3, (path, attributes) -> attributes.isRegularFile() && owns(locationOf(path)))
+                .map(ColdImageTier::objectOf)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Lists temporary files of writes in progress or interrupted by a crash. The stream must be closed.
+     */
+    Stream<Path> temporaryFiles() throws IOException {
+        return Files.isDirectory(tempDirectory) ? Files.list(tempDirectory) : Stream.empty();
+    }
+
+    private Path pathOf(String location) {
+        String name = location.substring(LOCATION_PREFIX.length());
+        return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name + ".gz");
+    }
+
+    private static String locationOf(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".gz") ? LOCATION_PREFIX + name.substring(0, name.length() - 3) : name;
+    }
+
+    private static AbstractImageStore.StoredObject objectOf(Path path) {
+        String location = locationOf(path);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new AbstractImageStore.StoredObject(hashOf(location), location, attributes.size(),
+                    attributes.lastModifiedTime().toInstant());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String hashOf(String location) {
+        String name = location.substring(LOCATION_PREFIX.length());
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * Decompresses on every read. The uncompressed length is taken from the gzip trailer.
+     */
+    private static final class GzipFileResource extends AbstractResource {
+
+        private final Path path;
+        private final String filename;
+
+        GzipFileResource(Path path, String filename) {
+            this.path = path;
+            this.filename = filename;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(trailer, channel.size() - 4);
+                return Integer.toUnsignedLong(trailer.getInt(0));
+            }
+        }
+
+        @Override
+        public boolean exists() {
+            return Files.exists(path);
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cold image [" + path + "]";
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.dziodzi.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Approximate number and size of the files under a directory. The directory is walked once in the background
+ * when the owning store starts, and the totals are kept up to date by the code adding and removing files,
+ * so reading them never touches the disk. Files changed while the walk runs may be counted twice or missed.
+ */
+@Slf4j
+final class DirectoryUsage {
+
+    private final Path root;
+    private final Predicate<Path> counted;
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean walked = new AtomicBoolean();
+
+    DirectoryUsage(Path root, Predicate<Path> counted) {
+        this.root = root;
+        this.counted = counted;
+    }
+
+    void added(long size) {
+        objects.incrementAndGet();
+        bytes.addAndGet(size);
+    }
+
+    void removed(long size) {
+        objects.decrementAndGet();
+        bytes.addAndGet(-size);
+    }
+
+    void start() {
+        if (walked.compareAndSet(false, true)) {
+            Thread walker = new Thread(this::walk, "storage-usage");
+            walker.setDaemon(true);
+            walker.start();
+        }
+    }
+
+    ImageStore.Usage snapshot() {
+        return new ImageStore.Usage(objects.get(), bytes.get());
+    }
+
+    private void walk() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long files = 0;
+        long size = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).filter(counted)::iterator) {
+                files++;
+                size += Files.size(path);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to measure {}: {}", root, e.getMessage());
+            return;
+        }
+        objects.addAndGet(files);
+        bytes.addAndGet(size);
+        log.info("{} holds {} files, {} bytes", root, files, size);
+    }
+}
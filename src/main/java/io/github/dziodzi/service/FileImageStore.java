@@ -0,0 +1,248 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Image store keeping every image in its own file. Files are named after the SHA-256 digest of their content
+ * and placed in nested prefix directories, e.g. {@code ab/cd/abcd1234....png} for a depth of 2 and a width
+ * of 2, so no directory grows beyond a few thousand entries. The location of an image is the absolute path.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "files", matchIfMissing = true)
+public class FileImageStore extends AbstractImageStore {
+
+    private final ImageIngestor imageIngestor;
+    private final Path root;
+    private final Path tempDirectory;
+    private final int shardDepth;
+    private final int shardWidth;
+    private final DirectoryUsage usage;
+
+    public FileImageStore(ImageIngestor imageIngestor,
+                          ImageRepository imageRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${storage.directory:/store}") String directory,
+                          @Value("${storage.shard-depth:2}") int shardDepth,
+                          @Value("${storage.shard-width:2}") int shardWidth) {
+        super(imageRepository, meterRegistry);
+        if (shardDepth < 0 || shardWidth < 1 || shardDepth * shardWidth > 32) {
+            throw new IllegalArgumentException("Invalid storage sharding: depth " + shardDepth + ", width " + shardWidth);
+        }
+        this.imageIngestor = imageIngestor;
+        this.root = Path.of(directory).toAbsolutePath().normalize();
+        this.tempDirectory = root.resolve(".tmp");
+        this.shardDepth = shardDepth;
+        this.shardWidth = shardWidth;
+        this.usage = new DirectoryUsage(root, path -> owns(path.toString()));
+        usage.start();
+    }
+
+    @Override
+    public <T> T store(InputStream input, Function<StoredImage, T> register) throws IOException {
+        Files.createDirectories(tempDirectory);
+        Path temp = tempDirectory.resolve(UUID.randomUUID().toString());
+        ImageIngestor.IngestResult ingested = imageIngestor.ingest(input, temp);
+        Path target = pathFor(ingested.contentHash(), ingested.mimeType());
+        return placeAndRegister(ingested.contentHash(), () -> {
+            boolean existing = Files.exists(target);
+            if (existing) {
+                Files.delete(temp);
+                log.debug("Content {} is already stored at {}", ingested.contentHash(), target);
+            } else {
+                try {
+                    Files.createDirectories(target.getParent());
+                    move(temp, target);
+                } catch (IOException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                usage.added(ingested.size());
+            }
+            return stored(target, ingested, existing);
+        }, register);
+    }
+
+    /**
+     * Links the file into the sharded layout, falling back to a copy when the source is on another file system.
+     */
+    @Override
+    public <T> T adopt(Path source, Function<StoredImage, T> register) throws IOException {
+        ImageIngestor.IngestResult inspected = imageIngestor.inspect(source);
+        Path target = pathFor(inspected.contentHash(), inspected.mimeType());
+        return placeAndRegister(inspected.contentHash(), () -> {
+            boolean existing = Files.exists(target);
+            if (!existing) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.createLink(target, source);
+                } catch (UnsupportedOperationException | IOException e) {
+                    Path temp = tempDirectory.resolve(UUID.randomUUID().toString());
+                    Files.createDirectories(tempDirectory);
+                    Files.copy(source, temp);
+                    move(temp, target);
+                }
+                usage.added(inspected.size());
+            }
+            return stored(target, inspected, existing);
+        }, register);
+    }
+
+    /**
+     * Reads content of this store, or an image of the old flat layout directly in the storage directory.
+     * Any other location, e.g. a path set through {@code /images/update/{id}}, is treated as missing.
+     */
+    @Override
+    public Resource read(Image image) throws IOException {
+        String location = image.getFilepath();
+        Path path = owns(location) ? Path.of(location) : legacyPath(location);
+        if (path == null || !Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new NoSuchFileException(location);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean owns(String location) {
+        Path normalized = normalize(location);
+        if (normalized == null || !normalized.startsWith(root) || normalized.getNameCount() != root.getNameCount() + shardDepth + 1) {
+            return false;
+        }
+        String name = normalized.getFileName().toString();
+        int dot = name.indexOf('.');
+        String hash = hashOf(name);
+        return HASH.matcher(hash).matches()
+                && normalized.equals(pathFor(hash, dot < 0 ? null : "image/" + name.substring(dot + 1)));
+    }
+
+    /**
+     * Resolves the path of content with the given hash and MIME type, e.g. {@code <root>/ab/cd/abcd....png}.
+     */
+    public Path pathFor(String contentHash, String mimeType) {
+        if (!HASH.matcher(contentHash).matches()) {
+            throw new IllegalArgumentException("Not a SHA-256 content hash: " + contentHash);
+        }
+        Path directory = root;
+        for (int level = 0; level < shardDepth; level++) {
+            directory = directory.resolve(contentHash.substring(level * shardWidth, (level + 1) * shardWidth));
+        }
+        return directory.resolve(contentHash + extension(mimeType));
+    }
+
+    @Override
+    public Usage usage() {
+        return usage.snapshot();
+    }
+
+    /**
+     * Lists the files in the sharded layout. Other files under the storage directory, e.g. images in the old
+     * flat layout that were not migrated yet, are never listed.
+     */
+    @Override
+    Stream<StoredObject> objects() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Stream.empty();
+        }
+        return Files.find(root, shardDepth + 1, (path, attributes) -> attributes.isRegularFile() && owns(path.toString()))
+                .map(FileImageStore::objectOf)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    Stream<Path> temporaryFiles() throws IOException {
+        return Files.isDirectory(tempDirectory) ? Files.list(tempDirectory) : Stream.empty();
+    }
+
+    @Override
+    protected void free(String contentHash, String location) {
+        if (!owns(location)) {
+            log.warn("Refusing to delete {}, which is not in the storage layout", location);
+            return;
+        }
+        Path path = Path.of(location);
+        try {
+            long size = Files.exists(path) ? Files.size(path) : 0;
+            if (Files.deleteIfExists(path)) {
+                usage.removed(size);
+                log.info("Deleted unreferenced content {}", location);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete unreferenced content {}: {}", location, e.getMessage());
+        }
+    }
+
+    /**
+     * Resolves an image of the old flat layout, {@code <storage.directory>/<uuid>_<name>}. Such images are read,
+     * but never deleted by this store.
+     *
+     * @return the path, or null if the location is not directly in the storage directory
+     */
+    private Path legacyPath(String location) {
+        Path normalized = normalize(location);
+        return normalized != null && root.equals(normalized.getParent()) ? normalized : null;
+    }
+
+    private static Path normalize(String location) {
+        if (location == null) {
+            return null;
+        }
+        try {
+            return Path.of(location).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static StoredObject objectOf(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new StoredObject(hashOf(path.getFileName().toString()), path.toString(), attributes.size(),
+                    attributes.lastModifiedTime().toInstant());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String hashOf(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static StoredImage stored(Path path, ImageIngestor.IngestResult content, boolean existing) {
+        return new StoredImage(path.toString(), content.contentHash(), content.mimeType(), content.size(), existing);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(source);
+        }
+    }
+}
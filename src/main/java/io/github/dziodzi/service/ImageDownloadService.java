@@ -0,0 +1,158 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.exception.NotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Streams stored images to HTTP clients without buffering them on the heap.
+ * <p>
+ * The ETag is the content hash, so it is strong and stays valid across restarts and tier moves;
+ * {@code If-None-Match} is answered with 304. A single byte range is answered with 206, or with 416 when it
+ * cannot be satisfied; several ranges, malformed ranges and a stale {@code If-Range} are answered with the whole
+ * image. Files of the file store are handed to Tomcat's sendfile, which copies them from the page cache to the
+ * socket without passing through the JVM. Other content is written through a small fixed-size buffer: pack
+ * records straight from the mapped segment, cold copies decompressed on the fly.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImageDownloadService {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ImageService imageService;
+    private final ImageStore imageStore;
+
+    public void download(String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Image image = imageService.getById(id);
+        String etag = image.getContentHash() == null ? null : "\"" + image.getContentHash() + "\"";
+        if (etag != null && new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        Resource content;
+        long length;
+        try {
+            content = imageStore.read(image);
+            length = content.contentLength();
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Image content not found");
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        response.setContentType(MediaTypeFactory.getMediaType(content)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        if (content.getFilename() != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.inline().filename(content.getFilename()).build().toString());
+        }
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start > end) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (count > 0 && !HttpMethod.HEAD.matches(request.getMethod())) {
+            write(content, start, count, request, response);
+        }
+    }
+
+    /**
+     * Returns the single range to send, or null to send the whole image.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void write(Resource content, long start, long count,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (content.isFile() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, content.getFile().getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        if (content.isFile()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(content.getFile().toPath(), StandardOpenOption.READ)) {
+                long position = start;
+                long end = start + count;
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred == 0 && position >= channel.size()) {
+                        throw new EOFException("Image content was truncated: " + content.getFilename());
+                    }
+                    position += transferred;
+                }
+            }
+        } else if (content instanceof ByteBufferResource buffer) {
+            WritableByteChannel target = Channels.newChannel(out);
+            ByteBuffer data = buffer.getByteBuffer().slice((int) start, (int) count);
+            while (data.hasRemaining()) {
+                target.write(data);
+            }
+        } else {
+            try (InputStream in = content.getInputStream()) {
+                StreamUtils.copyRange(in, out, start, start + count - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.dziodzi.service;
+
+import org.apache.tika.Tika;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams uploaded images to disk in a single pass.
+ * The MIME type is sniffed from the first bytes, the SHA-256 digest is computed while copying,
+ * and the data is written through NIO channels with pooled direct buffers,
+ * so an upload is never fully loaded onto the heap.
+ */
+@Component
+public class ImageIngestor {
+
+    private static final int SNIFF_LENGTH = 4096;
+
+    private final Tika tika = new Tika();
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final int bufferSize;
+
+    public ImageIngestor(@Value("${custom.upload.ingest.buffer-size:65536}") int bufferSize,
+                         @Value("${custom.upload.ingest.buffer-pool-size:32}") int bufferPoolSize) {
+        this.bufferSize = Math.max(bufferSize, SNIFF_LENGTH);
+        this.buffers = new ArrayBlockingQueue<>(bufferPoolSize);
+    }
+
+    /**
+     * Validates that the stream holds an image and copies it to the destination.
+     * The destination is not created if validation fails, and is removed if copying fails.
+     *
+     * @param input       the upload content
+     * @param destination the file to create
+     * @return the detected MIME type, hex-encoded SHA-256 digest and size of the content
+     * @throws IllegalArgumentException if the content is not an image
+     * @throws IOException              if reading or writing fails
+     */
+    public IngestResult ingest(InputStream input, Path destination) throws IOException {
+        try {
+            return ingest(input, () -> FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        } catch (IOException | RuntimeException e) {
+            if (!(e instanceof IllegalArgumentException)) {
+                Files.deleteIfExists(destination);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Validates that the stream holds an image and copies it to the output stream.
+     * Nothing is written if validation fails.
+     *
+     * @param input  the upload content
+     * @param output where to copy the content
+     * @return the detected MIME type, hex-encoded SHA-256 digest and size of the content
+     * @throws IllegalArgumentException if the content is not an image
+     * @throws IOException              if reading or writing fails
+     */
+    public IngestResult ingest(InputStream input, OutputStream output) throws IOException {
+        return ingest(input, () -> Channels.newChannel(output));
+    }
+
+    /**
+     * Validates and hashes an existing file without copying it.
+     *
+     * @param file the file to inspect
+     * @return the detected MIME type, hex-encoded SHA-256 digest and size of the content
+     * @throws IllegalArgumentException if the content is not an image
+     * @throws IOException              if reading fails
+     */
+    public IngestResult inspect(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return ingest(input, OutputStream.nullOutputStream());
+        }
+    }
+
+    private IngestResult ingest(InputStream input, Sink sink) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = acquireBuffer();
+        try (ReadableByteChannel in = Channels.newChannel(input)) {
+            while (buffer.position() < SNIFF_LENGTH && in.read(buffer) != -1) {
+                // fill the sniffing window before detecting the type
+            }
+            byte[] head = new byte[Math.min(buffer.position(), SNIFF_LENGTH)];
+            buffer.get(0, head);
+            String mimeType = tika.detect(head);
+            if (!mimeType.startsWith("image/")) {
+                throw new IllegalArgumentException("Uploaded file is not a valid image.");
+            }
+
+            long size = 0;
+            try (WritableByteChannel out = sink.open()) {
+                do {
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        size += out.write(buffer);
+                    }
+                    buffer.clear();
+                } while (in.read(buffer) != -1);
+            }
+            return new IngestResult(mimeType, HexFormat.of().formatHex(digest.digest()), size);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    public record IngestResult(String mimeType, String contentHash, long size) {
+    }
+
+    private interface Sink {
+        WritableByteChannel open() throws IOException;
+    }
+}
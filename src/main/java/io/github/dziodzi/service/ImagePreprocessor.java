@@ -0,0 +1,183 @@
+package io.github.dziodzi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Optional stage between storage and inference that shrinks images before they are sent to the neural network.
+ * The image is decoded with subsampling, downscaled to the configured maximum dimension and re-encoded,
+ * while the stored original stays untouched. If the image cannot be decoded or the re-encoded
+ * version is not smaller, the original is sent instead.
+ */
+@Component
+@Slf4j
+public class ImagePreprocessor {
+
+    private final Counter originalBytes;
+    private final Counter sentBytes;
+    private final Counter savedBytes;
+
+    @Value("${custom.neural-network.preprocessing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${custom.neural-network.preprocessing.max-dimension:512}")
+    private int maxDimension;
+
+    @Value("${custom.neural-network.preprocessing.format:jpg}")
+    private String format;
+
+    @Value("${custom.neural-network.preprocessing.quality:0.9}")
+    private float quality;
+
+    public ImagePreprocessor(MeterRegistry meterRegistry) {
+        this.originalBytes = Counter.builder("nn.preprocess.bytes.original")
+                .description("Size of the stored images before preprocessing")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.sentBytes = Counter.builder("nn.preprocess.bytes.sent")
+                .description("Size of the images sent to the neural network after preprocessing")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.savedBytes = Counter.builder("nn.preprocess.bytes.saved")
+                .description("Bytes not sent to the neural network thanks to preprocessing")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Prepares the payload sent to the neural network for a stored image.
+     *
+     * @param original the stored original image
+     * @return the downscaled and re-encoded image, or the original if preprocessing is disabled or does not help
+     */
+    public Resource prepare(Resource original) {
+        if (!enabled) {
+            return original;
+        }
+        long originalSize;
+        try {
+            originalSize = original.contentLength();
+        } catch (IOException e) {
+            return original;
+        }
+        try {
+            BufferedImage decoded = decode(original, maxDimension);
+            if (decoded == null) {
+                log.debug("Cannot decode {}, sending the original", original.getFilename());
+                return record(original, originalSize, originalSize);
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            encode(downscale(decoded, maxDimension), format, quality, output);
+            byte[] encoded = output.toByteArray();
+            if (encoded.length >= originalSize) {
+                return record(original, originalSize, originalSize);
+            }
+            String filename = String.valueOf(original.getFilename()).replaceFirst("\\.[^.]*$", "") + "." + format;
+            return record(new ByteArrayResource(encoded) {
+                @Override
+                public String getFilename() {
+                    return filename;
+                }
+            }, originalSize, encoded.length);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to preprocess {}, sending the original: {}", original.getFilename(), e.getMessage());
+            return record(original, originalSize, originalSize);
+        }
+    }
+
+    /**
+     * Decodes the image, skipping pixels while reading when it is much larger than the target size,
+     * so large uploads never occupy their full resolution in memory.
+     *
+     * @return the decoded image, or null if no reader supports its format
+     */
+    static BufferedImage decode(Resource original, int maxDimension) throws IOException {
+        try (InputStream stream = original.getInputStream();
+             ImageInputStream input = new MemoryCacheImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = longestSide / maxDimension;
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static BufferedImage downscale(BufferedImage source, int maxDimension) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    static void encode(BufferedImage image, String format, float quality, OutputStream output) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for format " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private Resource record(Resource payload, long original, long sent) {
+        originalBytes.increment(original);
+        sentBytes.increment(sent);
+        savedBytes.increment(original - sent);
+        return payload;
+    }
+}
@@ -1,14 +1,19 @@
 package io.github.dziodzi.service;
 
 import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.exception.InvalidBodyException;
 import io.github.dziodzi.exception.NotFoundException;
 import io.github.dziodzi.repository.ImageRepository;
 import io.github.dziodzi.tools.LogExecutionTime;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -16,6 +21,10 @@ import java.util.List;
 public class ImageService {
 
     private final ImageRepository imageRepository;
+    private final ImageStore imageStore;
+
+    @Value("${custom.pagination.max-size:500}")
+    private int maxPageSize;
 
     public Image save(Image image) {
         return imageRepository.save(image);
@@ -35,24 +44,57 @@ public class ImageService {
     }
 
     public List<Image> getByExactFilepath(String filepath) {
-        return imageRepository.findByFilepath(filepath).map(List::of).orElse(List.of());
+        return imageRepository.findByFilepath(filepath);
     }
 
-    public List<Image> getAll() {
-        return imageRepository.findAll();
+    /**
+     * Returns one page of images, newest first.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page
+     * @param size   the page size, capped at {@code custom.pagination.max-size}
+     */
+    public PageResponse<Image> getPage(String cursor, int size) {
+        if (size < 1) {
+            throw new InvalidBodyException("Page size must be positive");
+        }
+        int limit = Math.min(size, maxPageSize);
+        PageCursor after = PageCursor.decode(cursor);
+        PageRequest fetch = PageRequest.of(0, limit + 1);
+        List<Image> rows = after == null
+                ? imageRepository.findNewest(fetch)
+                : imageRepository.findNewestAfter(after.date(), after.id(), fetch);
+        return PageCursor.page(rows, limit, image -> new PageCursor(image.getUploadDate(), image.getId()));
     }
 
     public boolean existsById(String id) {
         return imageRepository.existsById(id);
     }
 
+    /**
+     * Deletes the image row and its stored file, unless other images share the same content.
+     */
     public void deleteById(String id) {
-        imageRepository.deleteById(id);
+        imageRepository.findById(id).ifPresent(image ->
+                imageStore.release(image, () -> imageRepository.delete(image)));
     }
 
+    /**
+     * Points the image to another file. The content hash identifies the bytes of the old file, which the prediction
+     * cache, the download ETag, the thumbnails and the store locks all rely on, so it is cleared: the image is then
+     * treated like one stored before content hashing. The old file is freed if no other image uses it.
+     */
     public void updateFilepath(String id, String newPath) {
         Image image = getById(id);
+        if (Objects.equals(image.getFilepath(), newPath)) {
+            return;
+        }
+        Image previous = Image.builder()
+                .id(image.getId())
+                .filepath(image.getFilepath())
+                .contentHash(image.getContentHash())
+                .build();
         image.setFilepath(newPath);
-        imageRepository.save(image);
+        image.setContentHash(null);
+        imageStore.release(previous, () -> imageRepository.save(image));
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Storage of uploaded image content, addressed by the SHA-256 digest of the content.
+ * {@code Image.filepath} holds the location returned by the store, and every {@link Image} row with that
+ * location counts as a reference to the content: identical uploads share one stored copy, which is
+ * removed together with the last row.
+ * <p>
+ * The backend is selected with {@code storage.backend}: {@code files} ({@link FileImageStore}, the default)
+ * or {@code pack} ({@link PackImageStore}).
+ */
+public interface ImageStore {
+
+    /**
+     * Validates and stores an upload, then registers it with {@code register}, typically by saving its
+     * {@link Image} row. The content is removed again if registering fails and nothing else references it.
+     *
+     * @param input    the upload content
+     * @param register called with the stored content while no reference to it can be released
+     * @return the result of {@code register}
+     * @throws IllegalArgumentException if the content is not an image
+     * @throws IOException              if reading or writing fails
+     */
+    <T> T store(InputStream input, Function<StoredImage, T> register) throws IOException;
+
+    /**
+     * Stores the content of a file kept outside this store, e.g. in the old flat layout, and registers it
+     * like {@link #store}. The source file is left in place.
+     *
+     * @param source   the file to copy
+     * @param register called with the stored content while no reference to it can be released
+     * @return the result of {@code register}
+     * @throws IllegalArgumentException if the content is not an image
+     * @throws IOException              if reading or writing fails
+     */
+    <T> T adopt(Path source, Function<StoredImage, T> register) throws IOException;
+
+    /**
+     * Opens the stored content of an image. The returned resource reads the stored bytes directly
+     * and can be read more than once.
+     *
+     * @param image the image
+     * @return the content, named after the stored content
+     * @throws IOException if the content is missing or cannot be read
+     */
+    Resource read(Image image) throws IOException;
+
+    /**
+     * Removes a reference with {@code unregister}, typically by deleting the {@link Image} row, and
+     * frees the content if no reference is left.
+     *
+     * @param image      the image whose reference is removed
+     * @param unregister removes the reference
+     */
+    void release(Image image, Runnable unregister);
+
+    /**
+     * Checks whether a location was returned by this store, as opposed to a path of another layout.
+     */
+    boolean owns(String location);
+
+    /**
+     * Returns the approximate number and size of the stored objects, without touching the disk.
+     */
+    Usage usage();
+
+    /**
+     * Content placed in the store.
+     *
+     * @param location     the value for {@code Image.filepath}
+     * @param contentHash  the hex-encoded SHA-256 digest of the content
+     * @param mimeType     the detected MIME type
+     * @param size         the size in bytes
+     * @param deduplicated whether the content had already been stored
+     */
+    record StoredImage(String location, String contentHash, String mimeType, long size, boolean deduplicated) {
+    }
+
+    /**
+     * Space used by a store.
+     *
+     * @param objects the number of stored objects
+     * @param bytes   the bytes used on disk
+     */
+    record Usage(long objects, long bytes) {
+    }
+}
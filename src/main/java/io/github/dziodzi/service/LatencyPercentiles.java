@@ -0,0 +1,51 @@
+package io.github.dziodzi.service;
+
+import java.util.Arrays;
+
+/**
+ * Percentiles over the most recent call latencies.
+ * Samples go into a fixed ring buffer; the sorted snapshot used for lookups is rebuilt only
+ * after a number of new samples, so reading a percentile on every call stays cheap.
+ */
+class LatencyPercentiles {
+
+    private static final int REFRESH_EVERY = 32;
+
+    private final long[] samples;
+    private int position;
+    private int count;
+    private int sinceRefresh;
+    private long[] sorted = new long[0];
+
+    LatencyPercentiles(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[position] = nanos;
+        position = (position + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceRefresh++;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @param quantile the quantile between 0 and 1, e.g. 0.99
+     * @return the latency at the quantile in nanoseconds, or 0 when nothing was recorded yet
+     */
+    synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (sinceRefresh >= Math.min(REFRESH_EVERY, count)) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceRefresh = 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,294 @@
+package io.github.dziodzi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of neural network endpoints with client-side load balancing.
+ * Calls are routed with power-of-two-choices on the number of outstanding requests. Backends are
+ * health-checked periodically and temporarily ejected after consecutive server errors or when their
+ * latency is an outlier compared to the other backends. If every backend is ejected, all of them are used.
+ */
+@Component
+@Slf4j
+public class NeuralNetworkBackends {
+
+    private static final double LATENCY_WEIGHT = 0.3;
+    private static final long LATENCY_MAX_AGE_MS = 60_000;
+
+    @Getter
+    private final List<Backend> backends;
+    private final HttpClient healthClient;
+    private final String healthPath;
+    private final Duration healthTimeout;
+    private final int failureThreshold;
+    private final long baseEjectionMs;
+    private final long maxEjectionMs;
+    private final double latencyOutlierFactor;
+
+    public NeuralNetworkBackends(MeterRegistry meterRegistry,
+                                 @Value("${custom.neural-network.endpoints:}") String endpoints,
+                                 @Value("${custom.address}:${custom.ports.neural-network}") String defaultEndpoint,
+                                 @Value("${custom.neural-network.health-check.path:/health}") String healthPath,
+                                 @Value("${custom.neural-network.health-check.timeout-ms:1000}") long healthTimeoutMs,
+                                 @Value("${custom.neural-network.ejection.consecutive-failures:5}") int failureThreshold,
+                                 @Value("${custom.neural-network.ejection.base-ms:10000}") long baseEjectionMs,
+                                 @Value("${custom.neural-network.ejection.max-ms:300000}") long maxEjectionMs,
+                                 @Value("${custom.neural-network.ejection.latency-factor:3.0}") double latencyOutlierFactor) {
+        List<String> urls = Arrays.stream(endpoints.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .toList();
+        this.backends = (urls.isEmpty() ? List.of(defaultEndpoint) : urls).stream()
+                .map(url -> new Backend(url, meterRegistry))
+                .toList();
+        this.healthPath = healthPath;
+        this.healthTimeout = Duration.ofMillis(healthTimeoutMs);
+        this.healthClient = HttpClient.newBuilder().connectTimeout(healthTimeout).build();
+        this.failureThreshold = failureThreshold;
+        this.baseEjectionMs = baseEjectionMs;
+        this.maxEjectionMs = maxEjectionMs;
+        this.latencyOutlierFactor = latencyOutlierFactor;
+        log.info("Neural network endpoints: {}", this.backends.stream().map(Backend::getUrl).toList());
+    }
+
+    /**
+     * Picks the backend for the next call: the less loaded of two random available backends.
+     *
+     * @return the chosen backend
+     */
+    public Backend choose() {
+        return choose(null);
+    }
+
+    /**
+     * Picks the backend for the next call, avoiding the given one when any other backend is available.
+     *
+     * @param excluded the backend to avoid, e.g. the target of the call being hedged, or null
+     * @return the chosen backend
+     */
+    public Backend choose(Backend excluded) {
+        long now = System.currentTimeMillis();
+        List<Backend> candidates = backends.stream()
+                .filter(backend -> backend != excluded && backend.isAvailable(now))
+                .toList();
+        if (candidates.isEmpty()) {
+            candidates = backends.stream().filter(backend -> backend != excluded).toList();
+        }
+        if (candidates.isEmpty()) {
+            candidates = backends;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Backend a = candidates.get(first);
+        Backend b = candidates.get(second);
+        return Comparator.comparingInt(Backend::getOutstanding)
+                .thenComparingDouble(Backend::getLatencyMs)
+                .compare(a, b) <= 0 ? a : b;
+    }
+
+    /**
+     * Probes every backend's health endpoint and ejects latency outliers.
+     * A backend is healthy when the probe gets a 2xx response; anything else, e.g. a 404 from a misrouted host,
+     * marks it unhealthy.
+     */
+    @Scheduled(fixedDelayString = "${custom.neural-network.health-check.interval-ms:5000}")
+    public void checkHealth() {
+        for (Backend backend : backends) {
+            boolean healthy;
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(backend.getUrl() + healthPath))
+                        .timeout(healthTimeout)
+                        .GET()
+                        .build();
+                int status = healthClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                healthy = status >= 200 && status < 300;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (backend.healthy != healthy) {
+                log.warn("Neural network backend {} is now {}", backend.getUrl(), healthy ? "healthy" : "unhealthy");
+            }
+            backend.healthy = healthy;
+        }
+        ejectLatencyOutliers();
+    }
+
+    /**
+     * Ejects backends slower than {@code latency-factor} times the median latency. The lower median is used, so
+     * with two backends the slow one is compared against the fast one rather than against itself. Only backends
+     * with a call in the last minute are compared, since the latency of a backend without traffic says nothing
+     * about how it performs now.
+     */
+    void ejectLatencyOutliers() {
+        if (backends.size() < 2) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        double[] latencies = backends.stream()
+                .mapToDouble(backend -> backend.recentLatencyMs(now))
+                .filter(latency -> latency > 0)
+                .sorted()
+                .toArray();
+        if (latencies.length < 2) {
+            return;
+        }
+        double median = latencies[(latencies.length - 1) / 2];
+        for (Backend backend : backends) {
+            if (backend.isAvailable(now) && backend.recentLatencyMs(now) > median * latencyOutlierFactor) {
+                log.warn("Ejecting neural network backend {}: latency {} ms against median {} ms",
+                        backend.getUrl(), Math.round(backend.getLatencyMs()), Math.round(median));
+                backend.eject(now);
+            }
+        }
+    }
+
+    /**
+     * One neural network endpoint with its load, latency and ejection state.
+     */
+    public class Backend {
+
+        @Getter
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Timer latency;
+        private final Counter errors;
+        private final Counter ejections;
+
+        private volatile double latencyMs;
+        private volatile long lastSampleAt;
+        private volatile boolean healthy = true;
+        private volatile long ejectedUntil;
+        private int consecutiveFailures;
+        private int consecutiveEjections;
+
+        private Backend(String url, MeterRegistry meterRegistry) {
+            this.url = url;
+            this.latency = Timer.builder("nn.backend.latency")
+                    .description("Latency of neural network calls per backend")
+                    .tag("backend", url)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.errors = Counter.builder("nn.backend.errors")
+                    .description("Failed neural network calls per backend")
+                    .tag("backend", url)
+                    .register(meterRegistry);
+            this.ejections = Counter.builder("nn.backend.ejections")
+                    .description("Times a neural network backend was ejected")
+                    .tag("backend", url)
+                    .register(meterRegistry);
+            Gauge.builder("nn.backend.outstanding", outstanding, AtomicInteger::get)
+                    .description("Neural network calls in flight per backend")
+                    .tag("backend", url)
+                    .register(meterRegistry);
+            Gauge.builder("nn.backend.available", this, backend -> backend.isAvailable(System.currentTimeMillis()) ? 1 : 0)
+                    .description("Whether a neural network backend is healthy and not ejected")
+                    .tag("backend", url)
+                    .register(meterRegistry);
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public double getLatencyMs() {
+            return latencyMs;
+        }
+
+        public boolean isAvailable(long now) {
+            return healthy && now >= ejectedUntil;
+        }
+
+        private double recentLatencyMs(long now) {
+            return now - lastSampleAt <= LATENCY_MAX_AGE_MS ? latencyMs : 0;
+        }
+
+        /**
+         * Marks the start of a call routed to this backend.
+         *
+         * @return the start time to pass to {@link #onSuccess} or {@link #onFailure}
+         */
+        public long onStart() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        public void onSuccess(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            outstanding.decrementAndGet();
+            latency.record(elapsed, TimeUnit.NANOSECONDS);
+            double sampleMs = elapsed / 1e6;
+            latencyMs = latencyMs == 0 ? sampleMs : latencyMs + (sampleMs - latencyMs) * LATENCY_WEIGHT;
+            lastSampleAt = System.currentTimeMillis();
+            synchronized (this) {
+                consecutiveFailures = 0;
+                consecutiveEjections = 0;
+            }
+        }
+
+        /**
+         * Records a failed call. Only server-side failures count towards ejection.
+         *
+         * @param startNanos  the value returned by {@link #onStart}
+         * @param serverError whether the backend answered with 5xx or could not be reached
+         */
+        public void onFailure(long startNanos, boolean serverError) {
+            outstanding.decrementAndGet();
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            errors.increment();
+            if (!serverError) {
+                return;
+            }
+            synchronized (this) {
+                if (++consecutiveFailures >= failureThreshold) {
+                    log.warn("Ejecting neural network backend {} after {} consecutive failures", url, consecutiveFailures);
+                    consecutiveFailures = 0;
+                    eject(System.currentTimeMillis());
+                }
+            }
+        }
+
+        /**
+         * Ejects the backend and forgets its latency: it gets no calls while ejected, so the old average would
+         * otherwise eject it again as soon as it returns, however much it recovered.
+         */
+        private synchronized void eject(long now) {
+            latencyMs = 0;
+            long duration = Math.min(maxEjectionMs, baseEjectionMs << Math.min(consecutiveEjections, 16));
+            consecutiveEjections++;
+            ejectedUntil = now + duration;
+            ejections.increment();
+        }
+    }
+}
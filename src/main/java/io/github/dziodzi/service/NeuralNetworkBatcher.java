@@ -0,0 +1,213 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Batching stage in front of {@link NeuralNetworkClient}.
+ * Concurrent prediction requests are collected until the batch is full or the oldest request
+ * has waited for the configured window, then sent to the model server as one batch call.
+ * If the server does not support batching, requests fall back to single calls.
+ */
+@Component
+@Slf4j
+public class NeuralNetworkBatcher {
+
+    private static final Set<Integer> BATCH_UNSUPPORTED_STATUSES = Set.of(404, 405, 501);
+
+    private final NeuralNetworkClient neuralNetworkClient;
+    private final ThreadPoolTaskExecutor dispatcher;
+    private final BlockingQueue<PendingPrediction> queue = new LinkedBlockingQueue<>();
+    private final DistributionSummary batchSize;
+    private final Timer batchWait;
+    private final Counter fallbacks;
+
+    @Value("${custom.neural-network.batching.enabled:false}")
+    private boolean enabled;
+
+    @Value("${custom.neural-network.batching.max-batch-size:8}")
+    private int maxBatchSize;
+
+    @Value("${custom.neural-network.batching.max-wait-ms:10}")
+    private long maxWaitMs;
+
+    @Value("${custom.neural-network.batching.support-recheck-ms:300000}")
+    private long supportRecheckMs;
+
+    @Value("${custom.neural-network.http.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    private volatile long batchUnsupportedUntil;
+    private volatile boolean running;
+    private Thread collector;
+
+    public NeuralNetworkBatcher(NeuralNetworkClient neuralNetworkClient,
+                                @Qualifier("batchDispatchExecutor") ThreadPoolTaskExecutor dispatcher,
+                                MeterRegistry meterRegistry) {
+        this.neuralNetworkClient = neuralNetworkClient;
+        this.dispatcher = dispatcher;
+        this.batchSize = DistributionSummary.builder("nn.batch.size")
+                .description("Number of images sent in one neural network call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.batchWait = Timer.builder("nn.batch.wait")
+                .description("Time a prediction request waited for its batch to be dispatched")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("nn.batch.fallback")
+                .description("Batches re-sent as single calls because the server does not support batching")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        collector = new Thread(this::collect, "nn-batch-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+        }
+        List<PendingPrediction> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.result().completeExceptionally(
+                new NeuralNetworkException("Prediction batching is shutting down", 503)));
+    }
+
+    /**
+     * Classifies an image, joining a batch with other concurrent requests when batching is enabled.
+     * The wait is bounded by the batching window plus the client read timeout, so a request whose batch is never
+     * sent fails instead of holding its thread forever.
+     *
+     * @param image the image to classify
+     * @return the prediction for the image
+     * @throws NeuralNetworkException with 503 if batching stops before the request is sent, or 504 if the
+     *                                prediction does not arrive in time
+     */
+    public PredictionResponse predict(Resource image) {
+        if (!running || System.currentTimeMillis() < batchUnsupportedUntil) {
+            return neuralNetworkClient.sendImageToPrediction(image);
+        }
+        PendingPrediction pending = new PendingPrediction(image, System.nanoTime(), new CompletableFuture<>());
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // stop() drained the queue before this request was added
+            pending.result().completeExceptionally(
+                    new NeuralNetworkException("Prediction batching is shutting down", 503));
+        }
+        long timeoutMs = maxWaitMs + readTimeoutMs;
+        try {
+            return pending.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.result().cancel(false);
+            throw new NeuralNetworkException("Neural network did not answer within " + timeoutMs + " ms", 504);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new NeuralNetworkException("Neural network call failed: " + e.getCause().getMessage(), 503);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException("Interrupted while waiting for the neural network", 503);
+        }
+    }
+
+    private void collect() {
+        while (running) {
+            try {
+                PendingPrediction first = queue.take();
+                List<PendingPrediction> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = first.enqueuedAt() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    PendingPrediction next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatcher.execute(() -> send(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<PendingPrediction> batch) {
+        long dispatchedAt = System.nanoTime();
+        batch.forEach(pending -> batchWait.record(dispatchedAt - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+        batchSize.record(batch.size());
+
+        if (batch.size() == 1 || System.currentTimeMillis() < batchUnsupportedUntil) {
+            sendSingly(batch);
+            return;
+        }
+
+        try {
+            List<PredictionResponse> predictions = neuralNetworkClient.sendImagesToPrediction(
+                    batch.stream().map(PendingPrediction::image).toList());
+            if (predictions.size() != batch.size()) {
+                throw new NeuralNetworkException("Batch response holds " + predictions.size()
+                        + " predictions for " + batch.size() + " images", 502);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(predictions.get(i));
+            }
+        } catch (NeuralNetworkException e) {
+            if (BATCH_UNSUPPORTED_STATUSES.contains(e.getStatusCode())) {
+                log.warn("Neural network does not support batching ({}), falling back to single calls", e.getStatusCode());
+                batchUnsupportedUntil = System.currentTimeMillis() + supportRecheckMs;
+                fallbacks.increment();
+                sendSingly(batch);
+            } else {
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private void sendSingly(List<PendingPrediction> batch) {
+        for (PendingPrediction pending : batch) {
+            try {
+                pending.result().complete(neuralNetworkClient.sendImageToPrediction(pending.image()));
+            } catch (RuntimeException e) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private record PendingPrediction(Resource image, long enqueuedAt, CompletableFuture<PredictionResponse> result) {
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker for neural network calls.
+ * The outcomes of the last calls are kept in a sliding window; when the share of failed or slow calls
+ * crosses its threshold the circuit opens and calls fail fast with 503 without reaching the model server.
+ * After the open period a few trial calls are let through: if they all succeed the circuit closes,
+ * otherwise it opens again. Client errors (4xx) are not counted as failures.
+ */
+@Component
+@Slf4j
+public class NeuralNetworkCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean enabled;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private final Counter rejections;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public NeuralNetworkCircuitBreaker(MeterRegistry meterRegistry,
+                                       @Value("${custom.neural-network.circuit-breaker.enabled:true}") boolean enabled,
+                                       @Value("${custom.neural-network.circuit-breaker.window-size:50}") int windowSize,
+                                       @Value("${custom.neural-network.circuit-breaker.min-calls:20}") int minCalls,
+                                       @Value("${custom.neural-network.circuit-breaker.failure-rate:0.5}") double failureRateThreshold,
+                                       @Value("${custom.neural-network.circuit-breaker.slow-call-rate:0.8}") double slowCallRateThreshold,
+                                       @Value("${custom.neural-network.circuit-breaker.slow-call-ms:5000}") long slowCallMs,
+                                       @Value("${custom.neural-network.circuit-breaker.open-ms:10000}") long openMs,
+                                       @Value("${custom.neural-network.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this.enabled = enabled;
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenCalls = halfOpenCalls;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+
+        Gauge.builder("nn.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("Neural network circuit state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+        for (State target : State.values()) {
+            transitions.put(target, Counter.builder("nn.circuit.transitions")
+                    .description("Neural network circuit state changes")
+                    .tag("state", target.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.rejections = Counter.builder("nn.circuit.rejected")
+                .description("Neural network calls failed fast because the circuit was open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a neural network call unless the circuit is open.
+     *
+     * @param call the call to run
+     * @param <T>  the call result type
+     * @return the call result
+     * @throws NeuralNetworkException with status 503 if the circuit is open, or the call's own exception
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        acquirePermission();
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            onResult(System.nanoTime() - start, false);
+            return result;
+        } catch (NeuralNetworkException e) {
+            onResult(System.nanoTime() - start, e.getStatusCode() >= 500);
+            throw e;
+        } catch (RuntimeException e) {
+            onResult(System.nanoTime() - start, true);
+            throw e;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private synchronized void acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                reject();
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                reject();
+            }
+            trialsStarted++;
+        }
+    }
+
+    private void reject() {
+        rejections.increment();
+        throw new NeuralNetworkException("Neural network is temporarily unavailable, circuit is open", 503);
+    }
+
+    private synchronized void onResult(long elapsedNanos, boolean failure) {
+        boolean slowCall = elapsedNanos >= slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            if (failure || slowCall) {
+                transitionTo(State.OPEN);
+            } else if (++trialsSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (recorded == failed.length) {
+            failures -= failed[position] ? 1 : 0;
+            slowCalls -= slow[position] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[position] = failure;
+        slow[position] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        position = (position + 1) % failed.length;
+
+        if (recorded >= minCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+            log.warn("Opening neural network circuit: {} failed and {} slow of the last {} calls",
+                    failures, slowCalls, recorded);
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State target) {
+        state = target;
+        transitions.get(target).increment();
+        switch (target) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            case CLOSED -> {
+                position = 0;
+                recorded = 0;
+                failures = 0;
+                slowCalls = 0;
+                log.info("Neural network circuit closed");
+            }
+        }
+    }
+}
@@ -1,66 +1,349 @@
 package io.github.dziodzi.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.dziodzi.entity.exchange.PredictionResponse;
 import io.github.dziodzi.exception.NeuralNetworkException;
 import io.github.dziodzi.tools.LogExecutionTime;
-import lombok.RequiredArgsConstructor;
+import io.github.dziodzi.tools.RequestTimeout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.http.*;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.http.converter.support.AllEncompassingFormHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @LogExecutionTime
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class NeuralNetworkClient {
 
-    @Value("${custom.address}")
-    private String address;
+    private static final int MIN_SAMPLES = 20;
 
-    @Value("${custom.ports.neural-network}")
-    private int neuralNetworkPort;
-
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final NeuralNetworkBackends backends;
+    private final NeuralNetworkCircuitBreaker circuitBreaker;
+    private final ThreadPoolTaskExecutor hedgeExecutor;
+    private final BinaryNeuralNetworkTransport binaryTransport;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FormHttpMessageConverter formConverter = new AllEncompassingFormHttpMessageConverter();
+    private final LatencyPercentiles latencies = new LatencyPercentiles(1024);
+    private final AtomicLong hedgeableCalls = new AtomicLong();
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    @Value("${custom.neural-network.transport:http}")
+    private String transport;
+
+    @Value("${custom.neural-network.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${custom.neural-network.hedging.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${custom.neural-network.hedging.initial-delay-ms:500}")
+    private long hedgeInitialDelayMs;
+
+    @Value("${custom.neural-network.hedging.min-delay-ms:20}")
+    private long hedgeMinDelayMs;
+
+    @Value("${custom.neural-network.hedging.budget:0.1}")
+    private double hedgeBudget;
+
+    @Value("${custom.neural-network.timeouts.adaptive:true}")
+    private boolean adaptiveTimeouts;
+
+    @Value("${custom.neural-network.timeouts.percentile:0.99}")
+    private double timeoutPercentile;
+
+    @Value("${custom.neural-network.timeouts.multiplier:3.0}")
+    private double timeoutMultiplier;
+
+    @Value("${custom.neural-network.timeouts.min-ms:1000}")
+    private long minTimeoutMs;
+
+    @Value("${custom.neural-network.http.read-timeout-ms:30000}")
+    private long maxTimeoutMs;
+
+    public NeuralNetworkClient(RestTemplate restTemplate,
+                               NeuralNetworkBackends backends,
+                               NeuralNetworkCircuitBreaker circuitBreaker,
+                               @Qualifier("hedgeExecutor") ThreadPoolTaskExecutor hedgeExecutor,
+                               BinaryNeuralNetworkTransport binaryTransport,
+                               MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.backends = backends;
+        this.circuitBreaker = circuitBreaker;
+        this.hedgeExecutor = hedgeExecutor;
+        this.binaryTransport = binaryTransport;
+        this.hedgesSent = Counter.builder("nn.hedge.sent")
+                .description("Duplicate neural network calls sent because the first one was slow")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("nn.hedge.won")
+                .description("Hedged neural network calls that answered before the original")
+                .register(meterRegistry);
+        Gauge.builder("nn.hedge.delay", this, client -> client.hedgeDelay().toMillis())
+                .description("Current delay before a neural network call is hedged")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("nn.timeout.current", this, client -> client.timeout().toMillis())
+                .description("Current response timeout of neural network calls")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
 
     public PredictionResponse sendImageToPrediction(File imageFile) {
+        return sendImageToPrediction(new FileSystemResource(imageFile));
+    }
 
-        String url = address + ":" + neuralNetworkPort + "/predict";
+    /**
+     * Sends an image to the prediction endpoint. The image is streamed into the multipart body
+     * and the prediction is read straight from the response stream.
+     * The call goes through the circuit breaker, its response timeout follows the recent latency
+     * percentiles, and with hedging enabled a slow call is duplicated to another backend.
+     *
+     * @param image the image to classify
+     * @return the prediction for the image
+     * @throws NeuralNetworkException if the call fails or the response cannot be parsed
+     */
+    public PredictionResponse sendImageToPrediction(Resource image) {
+        return circuitBreaker.execute(() -> hedgingEnabled
+                ? hedged(image)
+                : predict(backends.choose(), image));
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+    /**
+     * Sends several images to the batch prediction endpoint in one multipart request.
+     * The model server answers with a JSON array holding one prediction per file, in request order.
+     * With the binary transport the images are sent as separate frames on the shared connections instead.
+     *
+     * @param images the images to classify
+     * @return the predictions in the same order as the images
+     * @throws NeuralNetworkException with the HTTP status if the call fails, e.g. 404 when batching is not supported
+     */
+    public List<PredictionResponse> sendImagesToPrediction(List<? extends Resource> images) {
+        if (isBinaryTransport()) {
+            NeuralNetworkBackends.Backend backend = backends.choose();
+            return circuitBreaker.execute(() -> onBackend(backend,
+                    () -> binaryTransport.predictAll(backend.getUrl(), images, Duration.ofMillis(maxTimeoutMs))));
+        }
 
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", new FileSystemResource(imageFile));
+        images.forEach(image -> body.add("files", image));
+
+        return circuitBreaker.execute(() -> post(backends.choose(), "/predict/batch", body,
+                response -> objectMapper.readValue(response.getBody(), new TypeReference<List<PredictionResponse>>() {})));
+    }
+
+    /**
+     * Sends the call to one backend and, if it has not answered within the hedge delay, sends a duplicate
+     * to another backend and returns whichever answers first. At most the configured share of calls is hedged.
+     */
+    private PredictionResponse hedged(Resource image) {
+        NeuralNetworkBackends.Backend primaryBackend = backends.choose();
+        CompletableFuture<PredictionResponse> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(() -> predict(primaryBackend, image), hedgeExecutor);
+        } catch (TaskRejectedException e) {
+            return predict(primaryBackend, image);
+        }
+        long calls = hedgeableCalls.incrementAndGet();
+
+        try {
+            return primary.get(hedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Neural network call to {} is slow, hedging", primaryBackend.getUrl());
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NeuralNetworkException("Interrupted while waiting for the neural network", 503);
+        }
+        if (hedgesSent.count() >= calls * hedgeBudget) {
+            return await(primary);
+        }
+
+        NeuralNetworkBackends.Backend hedgeBackend = backends.choose(primaryBackend);
+        CompletableFuture<PredictionResponse> hedge;
+        try {
+            hedge = CompletableFuture.supplyAsync(() -> predict(hedgeBackend, image), hedgeExecutor);
+        } catch (TaskRejectedException e) {
+            return await(primary);
+        }
+        hedgesSent.increment();
 
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+        CompletableFuture<PredictionResponse> first = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        primary.whenComplete((result, error) -> complete(first, result, error, failed));
+        hedge.whenComplete((result, error) -> {
+            if (complete(first, result, error, failed)) {
+                hedgesWon.increment();
+            }
+        });
+        return await(first);
+    }
 
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, requestEntity, String.class);
+    private static boolean complete(CompletableFuture<PredictionResponse> first, PredictionResponse result,
+                                    Throwable error, AtomicInteger failed) {
+        if (error == null) {
+            return first.complete(result);
+        }
+        if (failed.incrementAndGet() == 2) {
+            first.completeExceptionally(error);
+        }
+        return false;
+    }
 
-        if (response.getStatusCode() == HttpStatus.BAD_REQUEST) {
-            log.error(response.getBody());
-            throw new NeuralNetworkException("Bad Request (400) - Invalid data provided to the neural network", 400);
-        } else if (response.getStatusCode() == HttpStatus.FORBIDDEN) {
-            throw new NeuralNetworkException("Forbidden (403) - Access to the neural network is denied", 403);
-        } else if (response.getStatusCode() == HttpStatus.UNPROCESSABLE_ENTITY) {
-            throw new NeuralNetworkException("Unprocessable Entity (422) - Invalid data or processing Exception", 422);
-        } else if (response.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR) {
-            throw new NeuralNetworkException("Internal Server Exception (500) - Neural network service failed", 500);
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
         }
+    }
 
+    private static RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof RuntimeException runtime
+                ? runtime
+                : new NeuralNetworkException("Neural network call failed: " + error.getMessage(), 502);
+    }
+
+    /**
+     * Sends one prediction call over the configured transport with the current adaptive timeout
+     * and records its latency. Failed and timed-out calls are recorded too, otherwise the distribution would be
+     * cut off at the current timeout and the timeout could never grow during a slowdown.
+     */
+    private PredictionResponse predict(NeuralNetworkBackends.Backend backend, Resource image) {
+        long start = System.nanoTime();
+        Duration timeout = adaptiveTimeouts ? timeout() : null;
         try {
-            return objectMapper.readValue(response.getBody(), PredictionResponse.class);
-        } catch (Exception e) {
+            if (isBinaryTransport()) {
+                Duration binaryTimeout = timeout != null ? timeout : Duration.ofMillis(maxTimeoutMs);
+                return onBackend(backend, () -> binaryTransport.predict(backend.getUrl(), image, binaryTimeout));
+            }
+            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+            body.add("file", image);
+            return RequestTimeout.with(timeout, () -> post(backend, "/predict", body,
+                    httpResponse -> objectMapper.readValue(httpResponse.getBody(), PredictionResponse.class)));
+        } finally {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private boolean isBinaryTransport() {
+        return "binary".equalsIgnoreCase(transport);
+    }
+
+    /**
+     * Delay before hedging: the configured percentile of recent latencies, or the initial delay
+     * until enough calls have been observed.
+     */
+    private Duration hedgeDelay() {
+        if (latencies.count() < MIN_SAMPLES) {
+            return Duration.ofMillis(hedgeInitialDelayMs);
+        }
+        long delayNanos = latencies.percentile(hedgePercentile);
+        return Duration.ofNanos(Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs)));
+    }
+
+    /**
+     * Response timeout of a prediction call: a multiple of the recent high percentile latency,
+     * kept between the configured minimum and the client-wide read timeout.
+     */
+    private Duration timeout() {
+        if (latencies.count() < MIN_SAMPLES) {
+            return Duration.ofMillis(maxTimeoutMs);
+        }
+        long timeoutMs = (long) (TimeUnit.NANOSECONDS.toMillis(latencies.percentile(timeoutPercentile)) * timeoutMultiplier);
+        return Duration.ofMillis(Math.max(minTimeoutMs, Math.min(maxTimeoutMs, timeoutMs)));
+    }
+
+    private <T> T post(NeuralNetworkBackends.Backend backend, String path, MultiValueMap<String, Object> body,
+                       ResponseExtractor<T> extractor) {
+        return onBackend(backend, () -> call(backend.getUrl() + path, body, extractor));
+    }
+
+    /**
+     * Runs a call on a backend picked by {@link NeuralNetworkBackends}, reporting the outcome back
+     * so that failing or slow backends get ejected.
+     */
+    private <T> T onBackend(NeuralNetworkBackends.Backend backend, Supplier<T> call) {
+        long start = backend.onStart();
+        try {
+            T result = call.get();
+            backend.onSuccess(start);
+            return result;
+        } catch (NeuralNetworkException e) {
+            backend.onFailure(start, e.getStatusCode() >= 500);
+            throw e;
+        } catch (RuntimeException e) {
+            backend.onFailure(start, true);
+            throw e;
+        }
+    }
+
+    private <T> T call(String url, MultiValueMap<String, Object> body, ResponseExtractor<T> extractor) {
+        try {
+            T result = restTemplate.execute(url, HttpMethod.POST,
+                    request -> formConverter.write(body, MediaType.MULTIPART_FORM_DATA, request),
+                    extractor);
+            if (result == null) {
+                throw new NeuralNetworkException("Empty response from neural network", 502);
+            }
+            return result;
+        } catch (HttpStatusCodeException e) {
+            throw toNeuralNetworkException(e);
+        } catch (ResourceAccessException e) {
+            log.error("Neural network at {} is unreachable", url, e);
+            throw new NeuralNetworkException("Neural network is unreachable: " + e.getMessage(), 503);
+        } catch (RestClientException e) {
             log.error("Exception parsing JSON response", e);
-            throw new NeuralNetworkException("Failed to parse response from neural network", response.getStatusCodeValue());
+            throw new NeuralNetworkException("Failed to parse response from neural network", 502);
         }
     }
-}
\ No newline at end of file
+
+    private NeuralNetworkException toNeuralNetworkException(HttpStatusCodeException e) {
+        int status = e.getStatusCode().value();
+        return switch (status) {
+            case 400 -> {
+                log.error(e.getResponseBodyAsString());
+                yield new NeuralNetworkException("Bad Request (400) - Invalid data provided to the neural network", 400);
+            }
+            case 403 -> new NeuralNetworkException("Forbidden (403) - Access to the neural network is denied", 403);
+            case 422 -> new NeuralNetworkException("Unprocessable Entity (422) - Invalid data or processing Exception", 422);
+            case 500 -> new NeuralNetworkException("Internal Server Exception (500) - Neural network service failed", 500);
+            default -> new NeuralNetworkException("Neural network call failed with status " + status, status);
+        };
+    }
+}
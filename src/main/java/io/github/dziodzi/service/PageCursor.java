@@ -0,0 +1,58 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.exception.InvalidBodyException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position in a listing ordered by date and ID, both descending. The next page starts right after the row the
+ * cursor points to, so pages stay stable while rows are inserted, and every page is an index range scan
+ * however deep the client has paged. Clients see the cursor as an opaque URL-safe token.
+ */
+public record PageCursor(LocalDateTime date, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date.toString() + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a token returned as {@code nextCursor}, or null for the first page
+     * @return the decoded cursor, or null for the first page
+     * @throws InvalidBodyException if the token was not issued by {@link #encode()}
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidBodyException("Invalid page cursor");
+            }
+            return new PageCursor(LocalDateTime.parse(value.substring(0, separator)), value.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidBodyException("Invalid page cursor");
+        }
+    }
+
+    /**
+     * Builds a page from rows fetched with one row more than the page size, which tells whether a next page exists.
+     */
+    public static <T> PageResponse<T> page(List<T> rows, int size, Function<T, PageCursor> cursorOf) {
+        if (rows.size() <= size) {
+            return new PageResponse<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new PageResponse<>(List.copyOf(items), cursorOf.apply(items.get(size - 1)).encode());
+    }
+}
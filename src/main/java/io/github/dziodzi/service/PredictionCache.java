@@ -0,0 +1,96 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of neural network predictions keyed by the SHA-256 hash of the image content.
+ * Concurrent lookups of the same missing hash are coalesced, so only one of them calls the loader
+ * while the others wait for its result.
+ */
+@Component
+@Slf4j
+public class PredictionCache {
+
+    private final Map<String, CompletableFuture<PredictionResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, PredictionResponse> cache;
+    private final boolean enabled;
+
+    public PredictionCache(@Value("${custom.prediction-cache.max-size:10000}") int maxSize,
+                           @Value("${custom.prediction-cache.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PredictionResponse> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Returns the cached prediction for the given content hash, or computes it with the loader.
+     * If another thread is already loading the same hash, waits for its result instead.
+     *
+     * @param contentHash the content hash of the image, or null to bypass the cache
+     * @param loader      the function calling the neural network on a cache miss
+     * @return the prediction for the image content
+     */
+    public PredictionResponse get(String contentHash, Supplier<PredictionResponse> loader) {
+        if (!enabled || contentHash == null) {
+            return loader.get();
+        }
+
+        PredictionResponse cached = cache.get(contentHash);
+        if (cached != null) {
+            log.debug("Prediction cache hit for {}", contentHash);
+            return cached;
+        }
+
+        CompletableFuture<PredictionResponse> future = new CompletableFuture<>();
+        CompletableFuture<PredictionResponse> existing = inFlight.putIfAbsent(contentHash, future);
+        if (existing != null) {
+            log.debug("Waiting for in-flight prediction of {}", contentHash);
+            return await(existing);
+        }
+
+        try {
+            PredictionResponse prediction = cache.get(contentHash);
+            if (prediction == null) {
+                prediction = loader.get();
+                cache.put(contentHash, prediction);
+            }
+            future.complete(prediction);
+            return prediction;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(contentHash, future);
+        }
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private PredictionResponse await(CompletableFuture<PredictionResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import io.github.dziodzi.entity.exchange.ErrorResponse;
 import io.github.dziodzi.entity.exchange.PredictionResponse;
 import io.github.dziodzi.entity.exchange.ResponseWrapper;
 import io.github.dziodzi.exception.NeuralNetworkException;
+import io.github.dziodzi.exception.TooManyRequestsException;
 import io.github.dziodzi.exception.UserNotFoundException;
 import io.github.dziodzi.repository.ImageRepository;
 import io.github.dziodzi.repository.UserRepository;
@@ -15,16 +16,16 @@ import io.github.dziodzi.tools.LogExecutionTime;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -36,64 +37,33 @@ public class ResultSenderService {
 
     private final ImageRepository imageRepository;
     private final VerificationHistoryRepository verificationHistoryRepository;
-    private final NeuralNetworkClient neuralNetworkClient;
+    private final NeuralNetworkBatcher neuralNetworkBatcher;
     private final UserRepository userRepository;
+    private final PredictionCache predictionCache;
+    private final ImageStore imageStore;
+    private final ImagePreprocessor imagePreprocessor;
+    private final AdmissionLimiter admissionLimiter;
+    private final ThumbnailService thumbnailService;
+    private final VerificationAnalyticsService verificationAnalytics;
 
-    private final Tika tika = new Tika();
-
-    @Value("${storage.directory:/store}")
-    private String storageDirectory;
+    @Value("${custom.neural-network.model-version:}")
+    private String modelVersion;
 
     public ResponseWrapper handleImageUpload(MultipartFile file, HttpServletRequest request) {
         try {
-            String mimeType = tika.detect(file.getBytes());
-            if (!mimeType.startsWith("image/")) {
-                throw new IllegalArgumentException("Uploaded file is not a valid image.");
+            User user = getCurrentUser();
+            admissionLimiter.checkAdmission();
+            Image savedImage = storeImage(file);
+            PredictionResponse prediction;
+            try {
+                prediction = verifyImage(savedImage, user);
+            } catch (TooManyRequestsException e) {
+                discard(savedImage);
+                throw e;
             }
-
-            log.info("Received file: name={}, size={} bytes", file.getOriginalFilename(), file.getSize());
-
-            String fileId = UUID.randomUUID().toString();
-            File dest = getFile(file, fileId);
-            file.transferTo(dest);
-            log.info("Saved file to: {}", dest.getAbsolutePath());
-
-            Image image = Image.builder()
-                    .id(fileId)
-                    .filepath(dest.getAbsolutePath())
-                    .uploadDate(LocalDateTime.now())
-                    .build();
-
-            Image savedImage = imageRepository.save(image);
-            log.info("Saved image with ID: {}, filepath: {}", savedImage.getId(), savedImage.getFilepath());
-
-            PredictionResponse prediction = neuralNetworkClient.sendImageToPrediction(dest);
-
-            String resultString = String.format(
-                    "class_description: %s, fake_probability: %.3f",
-                    prediction.getClassDescription(),
-                    prediction.getFakeProbability()
-            );
-
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-            log.info("Sending prediction to user: {}", username);
-
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
-
-            VerificationHistory history = VerificationHistory.builder()
-                    .id(UUID.randomUUID().toString())
-                    .image(savedImage)
-                    .user(user)
-                    .verificationDate(LocalDateTime.now())
-                    .result(resultString)
-                    .build();
-
-            verificationHistoryRepository.save(history);
-            log.info("Saved verification history: {}", resultString);
-
             return ResponseWrapper.success(prediction);
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (IllegalArgumentException | IOException | UserNotFoundException e) {
             log.error(e.getMessage());
             return ResponseWrapper.error(400, e.getMessage());
@@ -102,19 +72,96 @@ public class ResultSenderService {
             return ResponseWrapper.error(500, e.getMessage());
         }
     }
-    private File getFile(MultipartFile file, String fileId) throws IOException {
-        String originalFilename = file.getOriginalFilename();
-        String safeFilename = (originalFilename != null ? originalFilename : "image.png")
-                .replaceAll("[^a-zA-Z0-9\\.\\-_]", "_");
 
-        String newFilename = fileId + "_" + safeFilename;
-
-        File dir = new File(storageDirectory);
-        if (!dir.exists() && !dir.mkdirs()) {
-            throw new IOException("Could not create storage directory: " + dir.getAbsolutePath());
+    /**
+     * Validates the uploaded file, streams it to the image store and saves its {@link Image} row.
+     * Uploads with already stored content share the existing file. Thumbnails are generated in the background.
+     * Must run on the request thread, because the multipart content is discarded once the request completes.
+     *
+     * @param file the uploaded file
+     * @return the saved image
+     * @throws IOException if the file cannot be read or written
+     */
+    public Image storeImage(MultipartFile file) throws IOException {
+        Image savedImage;
+        try (InputStream input = file.getInputStream()) {
+            savedImage = imageStore.store(input, stored -> {
+                log.info("Received file: name={}, type={}, size={} bytes, deduplicated={}",
+                        file.getOriginalFilename(), stored.mimeType(), stored.size(), stored.deduplicated());
+                return imageRepository.save(Image.builder()
+                        .id(UUID.randomUUID().toString())
+                        .filepath(stored.location())
+                        .uploadDate(LocalDateTime.now())
+                        .contentHash(stored.contentHash())
+                        .build());
+            });
         }
+        log.info("Saved image with ID: {}, filepath: {}", savedImage.getId(), savedImage.getFilepath());
+        thumbnailService.generateInBackground(savedImage);
+        return savedImage;
+    }
+
+    /**
+     * Sends a stored image to the neural network and records the prediction in the verification history
+     * and the analytics rollups.
+     * Images with already known content are answered from the prediction cache.
+     *
+     * @param image the stored image
+     * @param user  the user the verification is recorded for
+     * @return the prediction returned by the neural network
+     * @throws IOException if the stored image cannot be read
+     */
+    public PredictionResponse verifyImage(Image image, User user) throws IOException {
+        Resource content = imageStore.read(image);
+        PredictionResponse cached = predictionCache.get(image.getContentHash(),
+                () -> admissionLimiter.execute(() -> neuralNetworkBatcher.predict(imagePreprocessor.prepare(content))));
+
+        PredictionResponse prediction = new PredictionResponse();
+        prediction.setPredictedClass(cached.getPredictedClass());
+        prediction.setClassDescription(cached.getClassDescription());
+        prediction.setFakeProbability(cached.getFakeProbability());
+        prediction.setImageName(content.getFilename());
+
+        String resultString = String.format(
+                "class_description: %s, fake_probability: %.3f",
+                prediction.getClassDescription(),
+                prediction.getFakeProbability()
+        );
+
+        log.info("Sending prediction to user: {}", user.getUsername());
+
+        VerificationHistory history = VerificationHistory.builder()
+                .id(UUID.randomUUID().toString())
+                .image(image)
+                .user(user)
+                .verificationDate(LocalDateTime.now())
+                .result(resultString)
+                .predictedClass(prediction.getPredictedClass())
+                .classDescription(prediction.getClassDescription())
+                .fakeProbability(prediction.getFakeProbability())
+                .modelVersion(modelVersion == null || modelVersion.isBlank() ? null : modelVersion)
+                .build();
+
+        verificationHistoryRepository.save(history);
+        verificationAnalytics.record(history);
+        log.info("Saved verification history: {}", resultString);
+
+        return prediction;
+    }
+
+    /**
+     * Deletes an image that was stored for a verification that did not happen, e.g. because the request was
+     * shed, so that retries do not leave one orphaned row and file each.
+     */
+    public void discard(Image image) {
+        imageStore.release(image, () -> imageRepository.delete(image));
+        log.info("Discarded image {} of a shed verification", image.getId());
+    }
 
-        File dest = new File(dir, newFilename);
-        return dest;
+    public User getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication.getName();
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
     }
 }
\ No newline at end of file
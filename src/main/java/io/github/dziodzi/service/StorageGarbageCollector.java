@@ -0,0 +1,370 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.exchange.StorageGcReport;
+import io.github.dziodzi.exception.NotFoundException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Finds stored content that no {@link Image} row points to and rows whose content is missing.
+ * <p>
+ * Content can lose its last row when a crash hits between storing it and saving the row, when a tier move is
+ * interrupted, or when {@code /images/update/{id}} repoints a row. Such content is freed once it is older than
+ * {@code storage.gc.grace-period-minutes}, under the same per-hash lock as uploads, so content that is being
+ * registered right now is never freed. Temporary files older than the grace period are deleted as well.
+ * Rows whose content is missing are only reported, in the log, in the returned report and as a gauge.
+ * <p>
+ * Stored content and rows are streamed in batches of {@code storage.gc.batch-size}, and every run is throttled to
+ * {@code storage.gc.max-items-per-second} so that it does not compete with uploads for the disk and the database.
+ * With {@code storage.gc.dry-run} nothing is deleted. Runs can also be started from {@code POST /admin/storage/gc},
+ * which returns at once while the run goes on in the background; the report of the last finished run is served by
+ * {@code GET /admin/storage/gc}.
+ */
+@Slf4j
+@Component
+public class StorageGarbageCollector {
+
+    private static final int MAX_REPORTED_IDS = 100;
+
+    private final AbstractImageStore hot;
+    private final ImageStore imageStore;
+    private final ImageRepository imageRepository;
+    private final boolean enabled;
+    private final boolean dryRun;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final long maxItemsPerSecond;
+    private final ThreadPoolTaskExecutor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile StorageGcReport lastReport;
+    private final AtomicLong missingRows = new AtomicLong();
+    private final Counter deletedOrphans;
+    private final Counter deletedBytes;
+    private final Counter deletedTemporaryFiles;
+
+    public StorageGarbageCollector(AbstractImageStore hot,
+                                   ImageStore imageStore,
+                                   ImageRepository imageRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Qualifier("storageGcExecutor") ThreadPoolTaskExecutor executor,
+                                   @Value("${storage.gc.enabled:true}") boolean enabled,
+                                   @Value("${storage.gc.dry-run:false}") boolean dryRun,
+                                   @Value("${storage.gc.grace-period-minutes:1440}") long gracePeriodMinutes,
+                                   @Value("${storage.gc.batch-size:500}") int batchSize,
+                                   @Value("${storage.gc.max-items-per-second:1000}") long maxItemsPerSecond) {
+        this.hot = hot;
+        this.imageStore = imageStore;
+        this.imageRepository = imageRepository;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.gracePeriod = Duration.ofMinutes(gracePeriodMinutes);
+        this.batchSize = batchSize;
+        this.maxItemsPerSecond = maxItemsPerSecond;
+
+        Gauge.builder("storage.gc.rows.missing", missingRows, AtomicLong::get)
+                .description("Image rows whose content was missing in the last garbage collection run")
+                .register(meterRegistry);
+        this.deletedOrphans = Counter.builder("storage.gc.orphans.deleted")
+                .description("Unreferenced stored images deleted by garbage collection")
+                .register(meterRegistry);
+        this.deletedBytes = Counter.builder("storage.gc.bytes.deleted")
+                .description("Bytes of unreferenced stored images deleted by garbage collection")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.deletedTemporaryFiles = Counter.builder("storage.gc.temporary.deleted")
+                .description("Abandoned temporary files deleted by garbage collection")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${storage.gc.initial-delay-ms:300000}",
+            fixedDelayString = "${storage.gc.interval-ms:3600000}")
+    public void scheduledRun() {
+        if (enabled && !running.get()) {
+            run(dryRun);
+        }
+    }
+
+    /**
+     * Runs one full pass over the stored content and the image rows.
+     *
+     * @param dryRun only report what would be deleted
+     * @throws TooManyRequestsException if a run is already in progress
+     */
+    public StorageGcReport run(boolean dryRun) {
+        claim();
+        try {
+            return collectAll(dryRun);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Starts one full pass in the background. Its report is available from {@link #getLastReport()} once it is done.
+     *
+     * @param dryRun only report what would be deleted
+     * @throws TooManyRequestsException if a run is already in progress
+     */
+    public void start(boolean dryRun) {
+        claim();
+        try {
+            executor.execute(() -> {
+                try {
+                    collectAll(dryRun);
+                } catch (RuntimeException e) {
+                    log.error("Storage garbage collection failed: {}", e.getMessage());
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            running.set(false);
+            throw new TooManyRequestsException("Storage garbage collection is already running", 60);
+        }
+    }
+
+    /**
+     * Returns the report of the last finished run, scheduled or started by hand.
+     *
+     * @throws NotFoundException if no run has finished since the application started
+     */
+    public StorageGcReport getLastReport() {
+        StorageGcReport report = lastReport;
+        if (report == null) {
+            throw new NotFoundException("No storage garbage collection run has finished yet");
+        }
+        return report;
+    }
+
+    private void claim() {
+        if (!running.compareAndSet(false, true)) {
+            throw new TooManyRequestsException("Storage garbage collection is already running", 60);
+        }
+    }
+
+    private StorageGcReport collectAll(boolean dryRun) {
+        Run run = new Run(dryRun, Instant.now().minus(gracePeriod));
+        sweep(run, hot::objects, hot::collect);
+        deleteTemporaryFiles(run, hot::temporaryFiles);
+        if (imageStore instanceof TieredImageStore tiered) {
+            sweep(run, tiered.coldTier()::objects, tiered::collectCold);
+            deleteTemporaryFiles(run, tiered.coldTier()::temporaryFiles);
+        }
+        checkRows(run);
+        missingRows.set(run.rowsMissing);
+
+        StorageGcReport report = run.report();
+        log.info("Storage garbage collection{}: {} of {} stored images unreferenced, {} deleted ({} bytes), "
+                        + "{} temporary files deleted, {} of {} rows without content, took {} ms",
+                dryRun ? " (dry run)" : "", run.orphans, run.objects, run.orphansDeleted, run.bytesDeleted,
+                run.temporaryDeleted, run.rowsMissing, run.rows, report.getDurationMs());
+        lastReport = report;
+        return report;
+    }
+
+    private void sweep(Run run, Listing<AbstractImageStore.StoredObject> listing, Collector collector) {
+        try (Stream<AbstractImageStore.StoredObject> objects = listing.list()) {
+            List<AbstractImageStore.StoredObject> batch = new ArrayList<>(batchSize);
+            Iterator<AbstractImageStore.StoredObject> iterator = objects.iterator();
+            while (iterator.hasNext()) {
+                AbstractImageStore.StoredObject object = iterator.next();
+                run.objects++;
+                if (object.modified().isBefore(run.cutoff)) {
+                    batch.add(object);
+                }
+                if (batch.size() == batchSize) {
+                    collect(run, batch, collector);
+                    batch.clear();
+                }
+                run.throttle();
+            }
+            collect(run, batch, collector);
+        } catch (IOException | RuntimeException e) {
+            log.error("Storage garbage collection failed to list stored images: {}", e.getMessage());
+        }
+    }
+
+    private void collect(Run run, List<AbstractImageStore.StoredObject> batch, Collector collector) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> referenced = imageRepository.findReferencedFilepaths(
+                batch.stream().map(AbstractImageStore.StoredObject::location).toList());
+        for (AbstractImageStore.StoredObject object : batch) {
+            if (referenced.contains(object.location())) {
+                continue;
+            }
+            run.orphans++;
+            run.orphanBytes += object.size();
+            if (run.dryRun) {
+                log.info("Unreferenced stored image {}, {} bytes", object.location(), object.size());
+                continue;
+            }
+            try {
+                if (collector.collect(object.contentHash(), object.location())) {
+                    run.orphansDeleted++;
+                    run.bytesDeleted += object.size();
+                    deletedOrphans.increment();
+                    deletedBytes.increment(object.size());
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to delete unreferenced stored image {}: {}", object.location(), e.getMessage());
+            }
+        }
+    }
+
+    private void deleteTemporaryFiles(Run run, Listing<Path> listing) {
+        try (Stream<Path> files = listing.list()) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (!Files.isRegularFile(file) || !Files.getLastModifiedTime(file).toInstant().isBefore(run.cutoff)) {
+                        continue;
+                    }
+                    run.temporaryFiles++;
+                    if (!run.dryRun && Files.deleteIfExists(file)) {
+                        run.temporaryDeleted++;
+                        deletedTemporaryFiles.increment();
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to delete temporary file {}: {}", file, e.getMessage());
+                }
+                run.throttle();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Storage garbage collection failed to list temporary files: {}", e.getMessage());
+        }
+    }
+
+    private void checkRows(Run run) {
+        String after = "";
+        while (true) {
+            List<Image> rows = imageRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, batchSize));
+            for (Image image : rows) {
+                run.rows++;
+                if (!contentExists(image)) {
+                    run.rowsMissing++;
+                    if (run.missingIds.size() < MAX_REPORTED_IDS) {
+                        run.missingIds.add(image.getId());
+                    }
+                    log.warn("Image {} points to missing content {}", image.getId(), image.getFilepath());
+                }
+                run.throttle();
+            }
+            if (rows.size() < batchSize) {
+                return;
+            }
+            after = rows.get(rows.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Images outside the store, e.g. not migrated yet, are checked on disk.
+     */
+    private boolean contentExists(Image image) {
+        try {
+            if (!imageStore.owns(image.getFilepath())) {
+                return Files.isRegularFile(Path.of(image.getFilepath()));
+            }
+            imageStore.read(image);
+            return true;
+        } catch (NoSuchFileException | InvalidPathException e) {
+            return false;
+        } catch (IOException e) {
+            log.warn("Failed to check content of image {}: {}", image.getId(), e.getMessage());
+            return true;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Listing<T> {
+        Stream<T> list() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Collector {
+        boolean collect(String contentHash, String location) throws IOException;
+    }
+
+    private final class Run {
+
+        private final boolean dryRun;
+        private final Instant cutoff;
+        private final long started = System.nanoTime();
+        private final List<String> missingIds = new ArrayList<>();
+        private long items;
+        private long objects;
+        private long orphans;
+        private long orphanBytes;
+        private long orphansDeleted;
+        private long bytesDeleted;
+        private long temporaryFiles;
+        private long temporaryDeleted;
+        private long rows;
+        private long rowsMissing;
+
+        private Run(boolean dryRun, Instant cutoff) {
+            this.dryRun = dryRun;
+            this.cutoff = cutoff;
+        }
+
+        private void throttle() {
+            long due = started + ++items * TimeUnit.SECONDS.toNanos(1) / maxItemsPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private StorageGcReport report() {
+            return StorageGcReport.builder()
+                    .dryRun(dryRun)
+                    .objectsScanned(objects)
+                    .orphansFound(orphans)
+                    .orphanBytes(orphanBytes)
+                    .orphansDeleted(orphansDeleted)
+                    .temporaryFilesFound(temporaryFiles)
+                    .temporaryFilesDeleted(temporaryDeleted)
+                    .rowsScanned(rows)
+                    .rowsMissingContent(rowsMissing)
+                    .missingImageIds(missingIds)
+                    .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+                    .finishedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.exception.InvalidBodyException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Thumbnails of stored images at the fixed sizes {@code storage.thumbnails.sizes}, the longest side in pixels.
+ * <p>
+ * Thumbnails are keyed by content hash, so duplicate uploads share them, and kept as files in
+ * {@code storage.thumbnails.directory}. An in-memory index in access order tracks their sizes, and the least
+ * recently used thumbnails are deleted once the cache exceeds {@code storage.thumbnails.max-bytes}.
+ * The index is rebuilt from the directory on startup, oldest files first.
+ * <p>
+ * Thumbnails are generated on the bounded {@code thumbnailExecutor}, after an upload when
+ * {@code storage.thumbnails.eager} is set, or on the first request otherwise. Concurrent requests for the same
+ * missing thumbnail wait for one generation, and all missing sizes of an image are generated from a single decode.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-zA-Z-]+)-(\\d+)\\.[a-z]+");
+
+    private final ImageStore imageStore;
+    private final Executor executor;
+    private final Path root;
+    private final Path tempDirectory;
+    private final List<Integer> sizes;
+    private final long maxBytes;
+    private final String format;
+    private final float quality;
+    private final boolean eager;
+    private final long waitMillis;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ThumbnailService(ImageStore imageStore,
+                            @Qualifier("thumbnailExecutor") Executor executor,
+                            MeterRegistry meterRegistry,
+                            @Value("${storage.thumbnails.directory:/store-thumbnails}") String directory,
+                            @Value("${storage.thumbnails.sizes:64,128,256}") List<Integer> sizes,
+                            @Value("${storage.thumbnails.max-bytes:268435456}") long maxBytes,
+                            @Value("${storage.thumbnails.format:jpg}") String format,
+                            @Value("${storage.thumbnails.quality:0.8}") float quality,
+                            @Value("${storage.thumbnails.eager:true}") boolean eager,
+                            @Value("${storage.thumbnails.wait-ms:10000}") long waitMillis) {
+        this.imageStore = imageStore;
+        this.executor = executor;
+        this.root = Path.of(directory).toAbsolutePath().normalize();
+        this.tempDirectory = root.resolve(".tmp");
+        this.sizes = sizes.stream().sorted().distinct().toList();
+        this.maxBytes = maxBytes;
+        this.format = format;
+        this.quality = quality;
+        this.eager = eager;
+        this.waitMillis = waitMillis;
+        loadIndex();
+
+        Gauge.builder("thumbnails.cache.bytes", this, ThumbnailService::cachedBytes)
+                .description("Bytes used by cached thumbnails")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.hits = Counter.builder("thumbnails.cache.requests").tag("result", "hit")
+                .description("Thumbnail requests served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("thumbnails.cache.requests").tag("result", "miss")
+                .description("Thumbnail requests that had to wait for a generation")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("thumbnails.cache.evictions")
+                .description("Thumbnails deleted to keep the cache within its size limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the thumbnail of the image at the given size, generating it if needed.
+     *
+     * @throws InvalidBodyException     if the size is not one of the configured sizes
+     * @throws TooManyRequestsException if the generation is queued for too long or the queue is full
+     * @throws IOException              if the image cannot be read or decoded
+     */
+    public Path get(Image image, int size) throws IOException {
+        checkSize(size);
+        Path cached = cached(keyOf(image, size));
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        CompletableFuture<Path> thumbnail = generate(image, List.of(size)).get(size);
+        try {
+            return thumbnail.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TooManyRequestsException("Thumbnail is still being generated", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the thumbnail", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Returns the content of the thumbnail, generating it if needed. Thumbnails are small, so they are read into
+     * memory while their file is known to exist: a file deleted by an eviction between the lookup and the read is
+     * treated as a cache miss and generated again, instead of failing the response halfway.
+     *
+     * @throws InvalidBodyException     if the size is not one of the configured sizes
+     * @throws TooManyRequestsException if the generation is queued for too long or the queue is full
+     * @throws IOException              if the image cannot be read or decoded
+     */
+    public Resource read(Image image, int size) throws IOException {
+        String key = keyOf(image, size);
+        for (int attempt = 1; ; attempt++) {
+            Path thumbnail = get(image, size);
+            try {
+                byte[] content = Files.readAllBytes(thumbnail);
+                String filename = thumbnail.getFileName().toString();
+                return new ByteArrayResource(content) {
+                    @Override
+                    public String getFilename() {
+                        return filename;
+                    }
+                };
+            } catch (NoSuchFileException e) {
+                forget(key);
+                if (attempt == 2) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entity tag of the thumbnail, {@code <content hash>-<size>}, without generating it, so that
+     * conditional requests for a thumbnail the client already has are answered without any work.
+     *
+     * @throws InvalidBodyException if the size is not one of the configured sizes
+     */
+    public String etagOf(Image image, int size) {
+        checkSize(size);
+        return keyOf(image, size);
+    }
+
+    /**
+     * Generates the missing thumbnails of a newly stored image in the background, if eager generation is enabled.
+     * Does nothing when the executor is saturated; the thumbnails are then generated on the first request.
+     */
+    public void generateInBackground(Image image) {
+        if (!eager) {
+            return;
+        }
+        List<Integer> missing = sizes.stream().filter(size -> cached(keyOf(image, size)) == null).toList();
+        if (!missing.isEmpty()) {
+            generate(image, missing).values().forEach(thumbnail -> thumbnail.exceptionally(e -> null));
+        }
+    }
+
+    /**
+     * Starts one generation for the sizes no other thread is generating yet and returns the pending thumbnails.
+     */
+    private Map<Integer, CompletableFuture<Path>> generate(Image image, List<Integer> requested) {
+        Map<Integer, CompletableFuture<Path>> thumbnails = new TreeMap<>();
+        SortedMap<Integer, CompletableFuture<Path>> owned = new TreeMap<>(Comparator.reverseOrder());
+        for (int size : requested) {
+            CompletableFuture<Path> future = new CompletableFuture<>();
+            CompletableFuture<Path> existing = inFlight.putIfAbsent(keyOf(image, size), future);
+            thumbnails.put(size, existing != null ? existing : future);
+            if (existing == null) {
+                owned.put(size, future);
+            }
+        }
+        if (owned.isEmpty()) {
+            return thumbnails;
+        }
+        try {
+            executor.execute(() -> render(image, owned));
+        } catch (RejectedExecutionException e) {
+            owned.forEach((size, future) -> {
+                inFlight.remove(keyOf(image, size), future);
+                future.completeExceptionally(new TooManyRequestsException("Too many thumbnails are being generated", 1));
+            });
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Decodes the image once and writes the thumbnails from the largest size down.
+     */
+    private void render(Image image, SortedMap<Integer, CompletableFuture<Path>> pending) {
+        try {
+            Resource original = imageStore.read(image);
+            BufferedImage decoded = ImagePreprocessor.decode(original, pending.firstKey());
+            if (decoded == null) {
+                throw new IOException("Unsupported image format: " + original.getFilename());
+            }
+            for (Map.Entry<Integer, CompletableFuture<Path>> entry : pending.entrySet()) {
+                decoded = ImagePreprocessor.downscale(decoded, entry.getKey());
+                Path thumbnail = write(keyOf(image, entry.getKey()), decoded);
+                // Unregister before completing, so a caller retrying after an eviction starts a new generation
+                inFlight.remove(keyOf(image, entry.getKey()), entry.getValue());
+                entry.getValue().complete(thumbnail);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to generate thumbnails of image {}: {}", image.getId(), e.getMessage());
+            Exception failure = e instanceof IOException io ? new UncheckedIOException(io) : e;
+            pending.forEach((size, future) -> {
+                inFlight.remove(keyOf(image, size), future);
+                future.completeExceptionally(failure);
+            });
+        } finally {
+            pending.forEach((size, future) -> inFlight.remove(keyOf(image, size), future));
+        }
+    }
+
+    private Path write(String key, BufferedImage thumbnail) throws IOException {
+        Files.createDirectories(tempDirectory);
+        Path temp = tempDirectory.resolve(UUID.randomUUID().toString());
+        Path target = pathOf(key);
+        try {
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                ImagePreprocessor.encode(thumbnail, format, quality, output);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        add(key, Files.size(target));
+        return target;
+    }
+
+    private void checkSize(int size) {
+        if (!sizes.contains(size)) {
+            throw new InvalidBodyException("Unsupported thumbnail size " + size + ", supported sizes are " + sizes);
+        }
+    }
+
+    /**
+     * Drops a thumbnail whose file disappeared, e.g. deleted by hand, from the index.
+     */
+    private synchronized void forget(String key) {
+        Long size = index.get(key);
+        if (size != null && !Files.exists(pathOf(key))) {
+            index.remove(key);
+            totalBytes -= size;
+        }
+    }
+
+    private synchronized Path cached(String key) {
+        return index.get(key) != null ? pathOf(key) : null;
+    }
+
+    private synchronized long cachedBytes() {
+        return totalBytes;
+    }
+
+    private void add(String key, long size) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Long previous = index.put(key, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String victim : evicted) {
+            try {
+                Files.deleteIfExists(pathOf(victim));
+                evictions.increment();
+            } catch (IOException e) {
+                log.warn("Failed to delete evicted thumbnail {}: {}", victim, e.getMessage());
+            }
+        }
+    }
+
+    private void loadIndex() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        record Cached(String key, long size, FileTime modified) {
+        }
+        List<Cached> found = new ArrayList<>();
+        try (Stream<Path> files = Files.find(root, 2, (path, attributes) -> attributes.isRegularFile()
+                && !path.startsWith(tempDirectory) && FILE_NAME.matcher(path.getFileName().toString()).matches())) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                String name = path.getFileName().toString();
+                found.add(new Cached(name.substring(0, name.lastIndexOf('.')), attributes.size(),
+                        attributes.lastModifiedTime()));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to load the thumbnail cache from {}: {}", root, e.getMessage());
+        }
+        found.sort(Comparator.comparing(Cached::modified));
+        found.forEach(cached -> add(cached.key(), cached.size()));
+        log.info("Loaded {} cached thumbnails, {} bytes, from {}", index.size(), totalBytes, root);
+    }
+
+    /**
+     * Images without a content hash, stored before hashing was introduced, are keyed by their ID.
+     */
+    private static String keyOf(Image image, int size) {
+        String owner = image.getContentHash() != null ? image.getContentHash() : image.getId();
+        return owner + "-" + size;
+    }
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key + "." + format);
+    }
+}
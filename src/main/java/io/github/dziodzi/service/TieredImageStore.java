@@ -0,0 +1,226 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Image store with a hot and a cold tier. Uploads land in the configured store ({@code storage.backend}),
+ * and a background mover compresses images whose newest upload is older than {@code storage.tiering.min-age-hours}
+ * into the {@link ColdImageTier}. Reads are served from whichever tier an image is in.
+ * <p>
+ * A move runs under the lock of the content hash: the cold copy is written and flushed, every row pointing
+ * to the hot location is switched to the cold one in a single update, and the hot copy is freed.
+ * A crash in between leaves at most an unreferenced copy behind, never a row without content.
+ * Moves are throttled to {@code storage.tiering.max-bytes-per-second} so they do not compete with uploads
+ * for disk bandwidth.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "storage.tiering.enabled", havingValue = "true")
+public class TieredImageStore implements ImageStore {
+
+    private final AbstractImageStore hot;
+    private final ColdImageTier cold;
+    private final ImageRepository imageRepository;
+    private final Duration minAge;
+    private final int batchSize;
+    private final long maxBytesPerSecond;
+    private final Counter movedImages;
+    private final Counter movedBytes;
+    private final Counter compressedBytes;
+
+    public TieredImageStore(AbstractImageStore hot,
+                            ColdImageTier cold,
+                            ImageRepository imageRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${storage.tiering.min-age-hours:72}") long minAgeHours,
+                            @Value("${storage.tiering.batch-size:200}") int batchSize,
+                            @Value("${storage.tiering.max-bytes-per-second:10485760}") long maxBytesPerSecond) {
+        this.hot = hot;
+        this.cold = cold;
+        this.imageRepository = imageRepository;
+        this.minAge = Duration.ofHours(minAgeHours);
+        this.batchSize = batchSize;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+
+        for (String tier : List.of("hot", "cold")) {
+            Gauge.builder("storage.tier.objects", this, store -> store.usageOf(tier).objects())
+                    .description("Images stored in the tier")
+                    .tag("tier", tier)
+                    .register(meterRegistry);
+            Gauge.builder("storage.tier.bytes", this, store -> store.usageOf(tier).bytes())
+                    .description("Bytes used by the tier")
+                    .tag("tier", tier)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        this.movedImages = Counter.builder("storage.tier.moved.images")
+                .description("Image rows moved to the cold tier")
+                .register(meterRegistry);
+        this.movedBytes = Counter.builder("storage.tier.moved.bytes")
+                .description("Uncompressed bytes moved to the cold tier")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.compressedBytes = Counter.builder("storage.tier.moved.bytes.compressed")
+                .description("Compressed bytes written to the cold tier")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T store(InputStream input, Function<StoredImage, T> register) throws IOException {
+        return hot.store(input, register);
+    }
+
+    @Override
+    public <T> T adopt(Path source, Function<StoredImage, T> register) throws IOException {
+        return hot.adopt(source, register);
+    }
+
+    @Override
+    public Resource read(Image image) throws IOException {
+        return cold.owns(image.getFilepath()) ? cold.read(image.getFilepath()) : hot.read(image);
+    }
+
+    @Override
+    public void release(Image image, Runnable unregister) {
+        String location = image.getFilepath();
+        if (image.getContentHash() == null || !cold.owns(location)) {
+            hot.release(image, unregister);
+            return;
+        }
+        try {
+            hot.withLock(image.getContentHash(), () -> {
+                unregister.run();
+                return freeColdIfUnreferenced(location);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean owns(String location) {
+        return cold.owns(location) || hot.owns(location);
+    }
+
+    @Override
+    public Usage usage() {
+        Usage hotUsage = hot.usage();
+        Usage coldUsage = cold.usage();
+        return new Usage(hotUsage.objects() + coldUsage.objects(), hotUsage.bytes() + coldUsage.bytes());
+    }
+
+    /**
+     * Moves one batch of images that have not been uploaded again for the configured age to the cold tier.
+     */
+    @Scheduled(fixedDelayString = "${storage.tiering.interval-ms:600000}")
+    public void moveToColdTier() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        List<String> candidates = imageRepository.findLocationsUploadedBefore(cutoff,
+                ColdImageTier.LOCATION_PREFIX + "%", PageRequest.of(0, batchSize));
+        long started = System.nanoTime();
+        long bytes = 0;
+        int moved = 0;
+        for (String location : candidates) {
+            if (!hot.owns(location)) {
+                continue;
+            }
+            try {
+                long size = move(location, cutoff);
+                if (size > 0) {
+                    bytes += size;
+                    moved++;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to move {} to the cold tier: {}", location, e.getMessage());
+            }
+            throttle(started, bytes);
+        }
+        if (moved > 0) {
+            log.info("Moved {} images, {} bytes to the cold tier", moved, bytes);
+        }
+    }
+
+    ColdImageTier coldTier() {
+        return cold;
+    }
+
+    /**
+     * Deletes a cold copy under the lock of its hash when no {@link Image} row points to it.
+     *
+     * @return whether the copy was deleted
+     */
+    boolean collectCold(String contentHash, String location) throws IOException {
+        return hot.withLock(contentHash, () -> freeColdIfUnreferenced(location));
+    }
+
+    private boolean freeColdIfUnreferenced(String location) {
+        if (imageRepository.countByFilepath(location) > 0) {
+            return false;
+        }
+        cold.delete(location);
+        return true;
+    }
+
+    private long move(String location, LocalDateTime cutoff) throws IOException {
+        Image image = imageRepository.findFirstByFilepath(location).orElse(null);
+        if (image == null || image.getContentHash() == null) {
+            return 0;
+        }
+        return hot.withLock(image.getContentHash(), () -> {
+            if (imageRepository.existsByFilepathAndUploadDateAfter(location, cutoff)) {
+                return 0L;
+            }
+            Resource content = hot.read(image);
+            String coldLocation = cold.locationOf(content.getFilename());
+            if (!cold.contains(coldLocation)) {
+                compressedBytes.increment(cold.write(coldLocation, content));
+            }
+            int rows = imageRepository.relocate(location, coldLocation);
+            hot.freeIfUnreferenced(image.getContentHash(), location);
+            long size = content.contentLength();
+            movedImages.increment(rows);
+            movedBytes.increment(size);
+            return size;
+        });
+    }
+
+    private void throttle(long startedNanos, long bytes) {
+        long due = startedNanos + bytes * TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond;
+        long wait = due - System.nanoTime();
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Usage usageOf(String tier) {
+        return "hot".equals(tier) ? hot.usage() : cold.usage();
+    }
+}
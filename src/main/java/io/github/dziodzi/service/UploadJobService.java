@@ -0,0 +1,149 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.Role;
+import io.github.dziodzi.entity.UploadJobStatus;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.entity.exchange.ResponseWrapper;
+import io.github.dziodzi.entity.exchange.UploadJobResponse;
+import io.github.dziodzi.exception.NotFoundException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.github.dziodzi.exception.UserNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service for running image verification as asynchronous jobs.
+ * The upload is stored on the request thread, while inference and persistence
+ * run on a bounded worker pool. Job states are kept in memory until they expire.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadJobService {
+
+    private final ResultSenderService resultSender;
+    private final AdmissionLimiter admissionLimiter;
+
+    @Qualifier("uploadJobExecutor")
+    private final ThreadPoolTaskExecutor uploadJobExecutor;
+
+    private final Map<String, UploadJobResponse> jobs = new ConcurrentHashMap<>();
+
+    @Value("${custom.upload.jobs.retention-minutes:30}")
+    private long retentionMinutes;
+
+    /**
+     * Stores the uploaded image and queues its verification.
+     *
+     * @param file the uploaded file
+     * @return a 202 wrapper carrying the queued job, or an error wrapper
+     * @throws TooManyRequestsException if the neural network is saturated, before anything is stored
+     */
+    public ResponseWrapper handleImageUpload(MultipartFile file) {
+        try {
+            User user = resultSender.getCurrentUser();
+            admissionLimiter.checkAdmission();
+            Image savedImage = resultSender.storeImage(file);
+            return ResponseWrapper.accepted(submit(savedImage, user));
+        } catch (TooManyRequestsException e) {
+            throw e;
+        } catch (IllegalArgumentException | IOException | UserNotFoundException e) {
+            log.error(e.getMessage());
+            return ResponseWrapper.error(400, e.getMessage());
+        } catch (TaskRejectedException e) {
+            log.warn("Upload job queue is full: {}", e.getMessage());
+            return ResponseWrapper.error(503, "Upload queue is full, try again later");
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return ResponseWrapper.error(500, e.getMessage());
+        }
+    }
+
+    /**
+     * Registers a job for a freshly stored image and schedules its verification.
+     *
+     * @param image the stored image, released again if the job cannot be queued
+     * @param user  the user who uploaded the image
+     * @return the queued job
+     * @throws TaskRejectedException if the worker pool is saturated
+     */
+    public UploadJobResponse submit(Image image, User user) {
+        UploadJobResponse job = UploadJobResponse.builder()
+                .jobId(UUID.randomUUID().toString())
+                .imageId(image.getId())
+                .status(UploadJobStatus.QUEUED)
+                .submittedAt(LocalDateTime.now())
+                .username(user.getUsername())
+                .build();
+        jobs.put(job.getJobId(), job);
+
+        try {
+            uploadJobExecutor.execute(() -> run(job.getJobId(), image, user));
+        } catch (RuntimeException e) {
+            jobs.remove(job.getJobId());
+            resultSender.discard(image);
+            throw e;
+        }
+        log.info("Queued upload job {} for image {}", job.getJobId(), image.getId());
+        return job;
+    }
+
+    /**
+     * Retrieves a job visible to the given user. Users only see their own jobs, admins see all of them.
+     *
+     * @param jobId the job ID
+     * @param user  the requesting user
+     * @return the current job state
+     * @throws NotFoundException if the job does not exist, has expired or belongs to another user
+     */
+    public UploadJobResponse getJob(String jobId, User user) {
+        UploadJobResponse job = jobs.get(jobId);
+        if (job == null || (user.getRole() != Role.ADMIN && !job.getUsername().equals(user.getUsername()))) {
+            throw new NotFoundException("Upload job not found");
+        }
+        return job;
+    }
+
+    @Scheduled(fixedDelayString = "${custom.upload.jobs.cleanup-interval-ms:60000}")
+    public void evictExpiredJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private void run(String jobId, Image image, User user) {
+        jobs.computeIfPresent(jobId, (id, job) -> job.toBuilder().status(UploadJobStatus.RUNNING).build());
+        try {
+            PredictionResponse prediction = resultSender.verifyImage(image, user);
+            jobs.computeIfPresent(jobId, (id, job) -> job.toBuilder()
+                    .status(UploadJobStatus.DONE)
+                    .result(prediction)
+                    .finishedAt(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            log.error("Upload job {} failed: {}", jobId, e.getMessage());
+            if (e instanceof TooManyRequestsException) {
+                resultSender.discard(image);
+            }
+            jobs.computeIfPresent(jobId, (id, job) -> job.toBuilder()
+                    .status(UploadJobStatus.FAILED)
+                    .error(e.getMessage())
+                    .finishedAt(LocalDateTime.now())
+                    .build());
+        }
+    }
+}
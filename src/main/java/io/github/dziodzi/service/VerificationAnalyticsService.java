@@ -0,0 +1,237 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.AnalyticsRebuildReport;
+import io.github.dziodzi.entity.exchange.VerificationAnalytics;
+import io.github.dziodzi.exception.InvalidBodyException;
+import io.github.dziodzi.repository.VerificationRollupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Verification counts, fake rates and fake probability histograms served from hourly rollups instead of
+ * aggregating {@code verification_history}.
+ * <p>
+ * Every saved verification is counted in memory, keyed by hour, user and probability bucket, and the counts are
+ * added to the {@code verification_rollup} table every {@code custom.analytics.flush-interval-ms}. Queries read
+ * at most one row per hour, user and bucket, however many verifications were made, so their cost depends on the
+ * length of the range and not on the traffic. Counts lag by up to one flush interval, and entries added or deleted
+ * through the history API are not counted until {@link #rebuild()} recomputes the rollups from the raw history.
+ * Changing {@code custom.analytics.probability-buckets} or {@code custom.analytics.fake-threshold} also requires
+ * a rebuild.
+ * <p>
+ * The rebuild only knows the counts this instance has not flushed yet. It must run while a single instance
+ * records verifications, otherwise the pending counts of the other instances are counted twice.
+ */
+@Slf4j
+@Service
+public class VerificationAnalyticsService {
+
+    private static final int MAX_USERS = 100;
+    private static final Duration REBUILD_MARGIN = Duration.ofMinutes(5);
+
+    private final VerificationRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int buckets;
+    private final double fakeThreshold;
+    private final Map<Key, Counts> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReadWriteLock recordLock = new ReentrantReadWriteLock();
+    private final Counter flushFailures;
+
+    public VerificationAnalyticsService(VerificationRollupRepository rollupRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${custom.analytics.probability-buckets:10}") int buckets,
+                                        @Value("${custom.analytics.fake-threshold:0.5}") double fakeThreshold) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.buckets = buckets;
+        this.fakeThreshold = fakeThreshold;
+        this.flushFailures = meterRegistry.counter("analytics.rollup.flush.failures");
+        Gauge.builder("analytics.rollup.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Counts a saved verification. Entries without a fake probability are ignored.
+     */
+    public void record(VerificationHistory history) {
+        if (history.getFakeProbability() == null || history.getUser() == null) {
+            return;
+        }
+        double probability = history.getFakeProbability();
+        Key key = new Key(history.getVerificationDate().truncatedTo(ChronoUnit.HOURS), history.getUser().getId(),
+                bucketOf(probability));
+        recordLock.readLock().lock();
+        try {
+            pending.merge(key, new Counts(1, probability >= fakeThreshold ? 1 : 0), Counts::plus);
+        } finally {
+            recordLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the counts recorded since the last flush to the rollup table. Counts that cannot be written are kept
+     * for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${custom.analytics.flush-interval-ms:10000}")
+    @PreDestroy
+    public void flush() {
+        flushLock.lock();
+        try {
+            for (Key key : List.copyOf(pending.keySet())) {
+                Counts counts = pending.remove(key);
+                if (counts == null) {
+                    continue;
+                }
+                try {
+                    rollupRepository.increment(key.hour(), key.userId(), key.bucket(),
+                            counts.verifications(), counts.fakes());
+                } catch (RuntimeException e) {
+                    pending.merge(key, counts, Counts::plus);
+                    flushFailures.increment();
+                    log.warn("Failed to flush verification rollups, retrying with the next flush: {}", e.getMessage());
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Recomputes the rollups of all hours before the current one from {@code verification_history} in one
+     * transaction. The current hour, starting at least a few minutes ago, is kept as recorded: its pending counts
+     * belong to entries that may be saved after the rebuild reads the history, so they can neither be dropped nor
+     * recomputed without counting some entries twice or not at all. Pending counts of the earlier hours are
+     * dropped while no verification is being recorded, because their entries are already in the history.
+     */
+    public AnalyticsRebuildReport rebuild() {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(REBUILD_MARGIN).truncatedTo(ChronoUnit.HOURS);
+        flushLock.lock();
+        try {
+            recordLock.writeLock().lock();
+            try {
+                pending.keySet().removeIf(key -> key.hour().isBefore(cutoff));
+            } finally {
+                recordLock.writeLock().unlock();
+            }
+            long[] rows = transactionTemplate.execute(status -> new long[]{
+                    rollupRepository.deleteBefore(cutoff),
+                    rollupRepository.rebuildFromHistory(cutoff, buckets, fakeThreshold)});
+            AnalyticsRebuildReport report = AnalyticsRebuildReport.builder()
+                    .rowsDeleted(rows[0])
+                    .rowsWritten(rows[1])
+                    .durationMs((System.nanoTime() - started) / 1_000_000)
+                    .build();
+            log.info("Rebuilt verification rollups before {}: {}", cutoff, report);
+            return report;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the counts, fake rate and fake probability histogram of a time range. The range is widened to
+     * whole hours.
+     *
+     * @param from        the start of the range, inclusive
+     * @param to          the end of the range, exclusive
+     * @param userId      the user to report on, or null for all users with a breakdown of the top users
+     * @param granularity {@code hour} or {@code day}, the width of the points of the series
+     */
+    public VerificationAnalytics query(LocalDateTime from, LocalDateTime to, Long userId, String granularity) {
+        ChronoUnit unit = switch (granularity) {
+            case "hour" -> ChronoUnit.HOURS;
+            case "day" -> ChronoUnit.DAYS;
+            default -> throw new InvalidBodyException("Granularity must be hour or day: " + granularity);
+        };
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.HOURS);
+        if (end.isBefore(to)) {
+            end = end.plusHours(1);
+        }
+        if (!start.isBefore(end)) {
+            throw new InvalidBodyException("The start of the range must be before its end");
+        }
+
+        List<VerificationRollupRepository.Totals> rows = userId == null
+                ? rollupRepository.sumByHour(start, end)
+                : rollupRepository.sumByHourForUser(start, end, userId);
+        long[] histogram = new long[buckets];
+        Map<LocalDateTime, long[]> series = new TreeMap<>();
+        long verifications = 0;
+        long fakes = 0;
+        for (VerificationRollupRepository.Totals row : rows) {
+            histogram[Math.min(row.getProbabilityBucket(), buckets - 1)] += row.getVerifications();
+            long[] point = series.computeIfAbsent(row.getBucketStart().truncatedTo(unit), date -> new long[2]);
+            point[0] += row.getVerifications();
+            point[1] += row.getFakes();
+            verifications += row.getVerifications();
+            fakes += row.getFakes();
+        }
+
+        List<VerificationAnalytics.Point> points = new ArrayList<>(series.size());
+        series.forEach((date, point) ->
+                points.add(new VerificationAnalytics.Point(date, point[0], point[1], rate(point[1], point[0]))));
+        List<VerificationAnalytics.UserRate> users = null;
+        if (userId == null) {
+            users = rollupRepository.sumByUser(start, end, PageRequest.of(0, MAX_USERS)).stream()
+                    .map(user -> new VerificationAnalytics.UserRate(user.getUserId(), user.getVerifications(),
+                            user.getFakes(), rate(user.getFakes(), user.getVerifications())))
+                    .toList();
+        }
+        return VerificationAnalytics.builder()
+                .from(start)
+                .to(end)
+                .userId(userId)
+                .granularity(granularity)
+                .verifications(verifications)
+                .fakes(fakes)
+                .fakeRate(rate(fakes, verifications))
+                .probabilityHistogram(Arrays.stream(histogram).boxed().toList())
+                .series(points)
+                .users(users)
+                .build();
+    }
+
+    private int bucketOf(double probability) {
+        return Math.max(0, Math.min((int) Math.floor(probability * buckets), buckets - 1));
+    }
+
+    private static double rate(long fakes, long verifications) {
+        return verifications == 0 ? 0 : (double) fakes / verifications;
+    }
+
+    private record Key(LocalDateTime hour, Long userId, int bucket) {
+    }
+
+    private record Counts(long verifications, long fakes) {
+        Counts plus(Counts other) {
+            return new Counts(verifications + other.verifications, fakes + other.fakes);
+        }
+    }
+}
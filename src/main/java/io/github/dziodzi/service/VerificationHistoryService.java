@@ -1,15 +1,18 @@
 package io.github.dziodzi.service;
 
-import io.github.dziodzi.entity.Image;
-import io.github.dziodzi.entity.User;
 import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.entity.exchange.VerificationHistoryFilter;
+import io.github.dziodzi.exception.InvalidBodyException;
 import io.github.dziodzi.exception.NotFoundException;
 import io.github.dziodzi.repository.VerificationHistoryRepository;
+import io.github.dziodzi.repository.VerificationHistorySpecifications;
 import io.github.dziodzi.tools.LogExecutionTime;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -19,6 +22,9 @@ public class VerificationHistoryService {
 
     private final VerificationHistoryRepository historyRepository;
 
+    @Value("${custom.pagination.max-size:500}")
+    private int maxPageSize;
+
     public VerificationHistory save(VerificationHistory history) {
         return historyRepository.save(history);
     }
@@ -36,19 +42,37 @@ public class VerificationHistoryService {
         historyRepository.deleteById(id);
     }
 
-    public List<VerificationHistory> findByUser(User user) {
-        return historyRepository.findByUser(user);
-    }
-
-    public List<VerificationHistory> findByImage(Image image) {
-        return historyRepository.findByImage(image);
-    }
-
-    public List<VerificationHistory> findByDateRange(LocalDateTime from, LocalDateTime to) {
-        return historyRepository.findByVerificationDateBetween(from, to);
+    /**
+     * Returns one page of verification history entries, newest first.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page
+     * @param size   the page size, capped at {@code custom.pagination.max-size}
+     */
+    public PageResponse<VerificationHistory> getPage(String cursor, int size) {
+        return search(new VerificationHistoryFilter(), cursor, size);
     }
 
-    public List<VerificationHistory> findByResult(String result) {
-        return historyRepository.findByResult(result);
+    /**
+     * Returns one page of the entries matching all supplied filters, newest first, fetched with a single query.
+     *
+     * @param filter the filters to combine; null fields are ignored
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page
+     * @param size   the page size, capped at {@code custom.pagination.max-size}
+     */
+    public PageResponse<VerificationHistory> search(VerificationHistoryFilter filter, String cursor, int size) {
+        if (size < 1) {
+            throw new InvalidBodyException("Page size must be positive");
+        }
+        int limit = Math.min(size, maxPageSize);
+        Specification<VerificationHistory> specification = VerificationHistorySpecifications.matching(filter);
+        PageCursor after = PageCursor.decode(cursor);
+        if (after != null) {
+            specification = specification.and(VerificationHistorySpecifications.after(after.date(), after.id()));
+        }
+        List<VerificationHistory> rows = historyRepository.findBy(specification, query -> query
+                .sortBy(VerificationHistorySpecifications.NEWEST_FIRST)
+                .limit(limit + 1)
+                .all());
+        return PageCursor.page(rows, limit, history -> new PageCursor(history.getVerificationDate(), history.getId()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package io.github.dziodzi.tools;
+
+import io.github.dziodzi.service.VerificationAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off recomputation of the verification analytics rollups from {@code verification_history}, e.g. after
+ * changing {@code custom.analytics.probability-buckets} or after editing the history by hand.
+ * The same rebuild can be started on a running application from {@code POST /admin/analytics/rebuild}.
+ * Either way, no other instance may be recording verifications meanwhile: their unflushed counts would be added
+ * on top of the recomputed rows.
+ * <p>
+ * Run with {@code ./gradlew bootRun --args='--custom.analytics.rebuild.enabled=true --spring.main.web-application-type=none'}.
+ * The application exits when the rebuild is done.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "custom.analytics.rebuild.enabled", havingValue = "true")
+public class AnalyticsRebuild implements ApplicationRunner {
+
+    private final VerificationAnalyticsService verificationAnalyticsService;
+    private final ApplicationContext context;
+
+    @Value("${custom.analytics.rebuild.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        verificationAnalyticsService.rebuild();
+        if (exitWhenDone) {
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+}
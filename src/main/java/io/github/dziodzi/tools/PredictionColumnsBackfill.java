@@ -0,0 +1,127 @@
+package io.github.dziodzi.tools;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Liquibase change filling {@code class_description} and {@code fake_probability} of existing
+ * {@code verification_history} rows from their formatted {@code result} text.
+ * <p>
+ * Rows are walked by primary key in batches and every batch is committed on its own, so only the rows of the
+ * current batch are locked and an interrupted run resumes where it stopped. Rows that already have a probability,
+ * e.g. written by the application while the backfill runs, are left untouched. The old text carries neither the
+ * predicted class nor the model version, so those stay empty for historic rows.
+ */
+@Slf4j
+public class PredictionColumnsBackfill implements CustomTaskChange {
+
+    private static final Pattern RESULT =
+            Pattern.compile("class_description: (.*), fake_probability: (\\d+(?:[.,]\\d+)?)");
+
+    @Setter
+    private int batchSize = 1000;
+    private int updated;
+    private int skipped;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        String after = "";
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, result FROM verification_history WHERE id > ? AND fake_probability IS NULL "
+                        + "ORDER BY id LIMIT ?");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE verification_history SET class_description = ?, fake_probability = ? "
+                             + "WHERE id = ? AND fake_probability IS NULL")) {
+            while (true) {
+                select.setString(1, after);
+                select.setInt(2, batchSize);
+                int rows = 0;
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows++;
+                        after = resultSet.getString("id");
+                        ParsedResult parsed = parse(resultSet.getString("result"));
+                        if (parsed == null) {
+                            skipped++;
+                            continue;
+                        }
+                        update.setString(1, parsed.classDescription());
+                        update.setDouble(2, parsed.fakeProbability());
+                        update.setString(3, after);
+                        update.addBatch();
+                        updated++;
+                    }
+                }
+                if (rows > 0) {
+                    update.executeBatch();
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+                if (rows < batchSize) {
+                    break;
+                }
+                log.info("Prediction columns backfill: {} rows updated, {} unparseable", updated, skipped);
+            }
+        } catch (SQLException e) {
+            throw new CustomChangeException("Prediction columns backfill stopped after " + after, e);
+        }
+    }
+
+    /**
+     * Parses a result written as {@code class_description: <description>, fake_probability: <probability>}.
+     * The probability was formatted with the default locale, so a decimal comma is accepted as well.
+     *
+     * @return the parsed values, or null if the text has a different shape
+     */
+    static ParsedResult parse(String result) {
+        if (result == null) {
+            return null;
+        }
+        Matcher matcher = RESULT.matcher(result.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new ParsedResult(matcher.group(1), Double.parseDouble(matcher.group(2).replace(',', '.')));
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Backfilled prediction columns of " + updated + " verification history rows, " + skipped
+                + " rows could not be parsed";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (batchSize < 1) {
+            errors.addError("batchSize must be positive");
+        }
+        return errors;
+    }
+
+    record ParsedResult(String classDescription, double fakeProbability) {
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.dziodzi.tools;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Per-call response timeout for outgoing HTTP requests made on the current thread.
+ * The neural network request factory reads it when a request is created, so a caller can
+ * tighten the timeout of one call without changing the client-wide default.
+ */
+public final class RequestTimeout {
+
+    private static final ThreadLocal<Duration> CURRENT = new ThreadLocal<>();
+
+    private RequestTimeout() {
+    }
+
+    public static <T> T with(Duration timeout, Supplier<T> call) {
+        Duration previous = CURRENT.get();
+        CURRENT.set(timeout);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the timeout set for the current thread, or null to use the client default
+     */
+    public static Duration current() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.dziodzi.tools;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.github.dziodzi.service.ImageStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One-off migration of images stored as plain files, e.g. in the old flat layout
+ * ({@code <storage.directory>/<uuid>_<name>}) or in the sharded layout when switching to the pack store,
+ * into the configured {@link ImageStore}. Duplicates are collapsed into one stored copy,
+ * {@code Image.filepath} and {@code Image.contentHash} are rewritten, and the old file is deleted once no row
+ * points to it. Rows already in the store are skipped, so an interrupted run can simply be started again.
+ * <p>
+ * Run with {@code ./gradlew bootRun --args='--storage.migration.enabled=true --spring.main.web-application-type=none'}.
+ * The application exits when the migration is done, with status 1 if any image could not be migrated.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.migration.enabled", havingValue = "true")
+public class StorageMigration implements ApplicationRunner {
+
+    private final ImageRepository imageRepository;
+    private final ImageStore imageStore;
+    private final ApplicationContext context;
+
+    @Value("${storage.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${storage.migration.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int migrated = 0;
+        int skipped = 0;
+        int failed = 0;
+        Page<Image> page = imageRepository.findAll(PageRequest.of(0, batchSize, Sort.by("id")));
+        while (true) {
+            for (Image image : page) {
+                if (imageStore.owns(image.getFilepath())) {
+                    skipped++;
+                    continue;
+                }
+                Path source = Path.of(image.getFilepath());
+                try {
+                    migrate(image, source);
+                    migrated++;
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    log.error("Failed to migrate image {} at {}: {}", image.getId(), source, e.getMessage());
+                }
+            }
+            log.info("Storage migration: {} migrated, {} already migrated, {} failed", migrated, skipped, failed);
+            if (!page.hasNext()) {
+                break;
+            }
+            page = imageRepository.findAll(page.nextPageable());
+        }
+
+        if (exitWhenDone) {
+            int status = failed > 0 ? 1 : 0;
+            System.exit(SpringApplication.exit(context, () -> status));
+        }
+    }
+
+    private void migrate(Image image, Path source) throws IOException {
+        if (!Files.isRegularFile(source)) {
+            throw new IOException("File does not exist");
+        }
+        String oldPath = image.getFilepath();
+        imageStore.adopt(source, stored -> {
+            image.setFilepath(stored.location());
+            image.setContentHash(stored.contentHash());
+            return imageRepository.save(image);
+        });
+        if (!imageRepository.existsByFilepath(oldPath)) {
+            Files.deleteIfExists(source);
+        }
+    }
+}
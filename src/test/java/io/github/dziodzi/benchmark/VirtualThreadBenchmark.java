@@ -0,0 +1,120 @@
+package io.github.dziodzi.benchmark;
+
+import io.github.dziodzi.config.AppConfig;
+import io.github.dziodzi.service.NeuralNetworkBackends;
+import io.github.dziodzi.service.NeuralNetworkCircuitBreaker;
+import io.github.dziodzi.service.NeuralNetworkClient;
+import io.github.dziodzi.simulator.NeuralNetworkSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares platform and virtual threads on the blocking inference call of the upload pipeline.
+ * The same number of concurrent {@link NeuralNetworkClient} calls is run against the neural network
+ * simulator with a fixed latency, once on a platform pool sized like Tomcat's default and once with a virtual
+ * thread per call. Run with {@code ./gradlew benchmark -PvirtualThreads}; the virtual-thread run is
+ * skipped on toolchains older than Java 21.
+ */
+@Tag("benchmark")
+class VirtualThreadBenchmark {
+
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 2000);
+    private static final int LATENCY_MS = Integer.getInteger("benchmark.latency-ms", 100);
+    private static final int PLATFORM_THREADS = Integer.getInteger("benchmark.platform-threads", 200);
+
+    private static NeuralNetworkSimulator modelServer;
+    private static NeuralNetworkClient client;
+    private static File image;
+
+    @BeforeAll
+    static void startModelServer(@TempDir Path tempDir) throws Exception {
+        modelServer = NeuralNetworkSimulator.start(NeuralNetworkSimulator.Profile.fast()
+                .latency(NeuralNetworkSimulator.LatencyDistribution.fixed(LATENCY_MS)));
+
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "clientType", "apache");
+        ReflectionTestUtils.setField(appConfig, "maxConnections", REQUESTS);
+        ReflectionTestUtils.setField(appConfig, "connectTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(appConfig, "readTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(appConfig, "poolTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(appConfig, "idleTimeoutMs", 60000L);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NeuralNetworkBackends backends = new NeuralNetworkBackends(meterRegistry, "",
+                modelServer.getBaseUrl(), "/health", 1000, 5, 10000, 300000, 3.0);
+        NeuralNetworkCircuitBreaker circuitBreaker = new NeuralNetworkCircuitBreaker(meterRegistry, false,
+                50, 20, 0.5, 0.8, 5000, 10000, 3);
+        client = new NeuralNetworkClient(new RestTemplate(appConfig.neuralNetworkRequestFactory(meterRegistry)),
+                backends, circuitBreaker, new ThreadPoolTaskExecutor(), null, meterRegistry);
+
+        image = Files.write(tempDir.resolve("image.png"), new byte[32 * 1024]).toFile();
+    }
+
+    @AfterAll
+    static void stopModelServer() {
+        modelServer.close();
+    }
+
+    @Test
+    void platformThreads() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(PLATFORM_THREADS);
+        try {
+            run("platform (" + PLATFORM_THREADS + " threads)", new TaskExecutorAdapter(pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need a Java 21 toolchain");
+        run("virtual", new VirtualThreadTaskExecutor("benchmark-"));
+    }
+
+    private void run(String mode, AsyncTaskExecutor executor) throws Exception {
+        long[] latencies = new long[REQUESTS];
+        List<Future<?>> futures = new ArrayList<>(REQUESTS);
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                long callStart = System.nanoTime();
+                client.sendImageToPrediction(image);
+                latencies[index] = System.nanoTime() - callStart;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-24s requests=%d elapsed=%dms throughput=%.1f req/s p50=%dms p99=%dms%n",
+                mode, REQUESTS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                REQUESTS / (elapsed / 1e9),
+                TimeUnit.NANOSECONDS.toMillis(latencies[REQUESTS / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latencies[(int) (REQUESTS * 0.99)]));
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.dziodzi.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Unit tests for the neural network HTTP client configuration in the AppConfig class.
+ */
+class AppConfigTest {
+
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/predict", exchange -> {
+            clientAddresses.add(exchange.getRemoteAddress());
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private static AppConfig appConfig(String clientType) {
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "clientType", clientType);
+        ReflectionTestUtils.setField(appConfig, "maxConnections", 10);
+        ReflectionTestUtils.setField(appConfig, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(appConfig, "readTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(appConfig, "poolTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(appConfig, "idleTimeoutMs", 5000L);
+        return appConfig;
+    }
+
+    /**
+     * Verifies that sequential calls through the pooled client share one kept-alive connection.
+     */
+    @Test
+    void whenPooledClientCallsRepeatedly_thenConnectionIsReused() {
+        ClientHttpRequestFactory factory = appConfig("apache").neuralNetworkRequestFactory(new SimpleMeterRegistry());
+        RestTemplate restTemplate = new RestTemplate(factory);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/predict";
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ok", restTemplate.getForObject(url, String.class));
+        }
+
+        assertInstanceOf(HttpComponentsClientHttpRequestFactory.class, factory);
+        assertEquals(1, clientAddresses.size());
+    }
+
+    /**
+     * Verifies that the JDK client is selected by the client property.
+     */
+    @Test
+    void whenClientIsJdk_thenJdkRequestFactoryIsUsed() {
+        ClientHttpRequestFactory factory = appConfig("jdk").neuralNetworkRequestFactory(new SimpleMeterRegistry());
+
+        assertInstanceOf(JdkClientHttpRequestFactory.class, factory);
+        assertEquals("ok", new RestTemplate(factory).getForObject(
+                "http://localhost:" + server.getAddress().getPort() + "/predict", String.class));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.dziodzi.controller;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.service.BatchUploadService;
+import io.github.dziodzi.service.ImageDownloadService;
+import io.github.dziodzi.service.ImageService;
+import io.github.dziodzi.service.ResultSenderService;
+import io.github.dziodzi.service.ThumbnailService;
+import io.github.dziodzi.service.UploadJobService;
+import io.github.dziodzi.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for serving thumbnails in the ImageController class.
+ */
+class ImageControllerTest {
+
+    @Mock
+    private ImageService imageService;
+    @Mock
+    private ImageDownloadService imageDownloadService;
+    @Mock
+    private ThumbnailService thumbnailService;
+    @Mock
+    private ResultSenderService resultSender;
+    @Mock
+    private UploadJobService uploadJobService;
+    @Mock
+    private BatchUploadService batchUploadService;
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private ImageController imageController;
+
+    private final Image image = Image.builder().id("image-1").contentHash("hash").build();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(imageService.getById("image-1")).thenReturn(image);
+        when(thumbnailService.etagOf(image, 64)).thenReturn("hash-64");
+    }
+
+    /**
+     * Verifies that a thumbnail the client already has is confirmed with 304 without reading or generating it.
+     */
+    @Test
+    void whenEtagMatches_thenThumbnailIsNotGenerated() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/image-1/thumbnail");
+        request.addHeader("If-None-Match", "\"hash-64\"");
+
+        ResponseEntity<Resource> response = imageController.getImageThumbnail("image-1", 64,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"hash-64\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(thumbnailService, never()).read(any(), anyInt());
+        verify(thumbnailService, never()).get(any(), anyInt());
+    }
+}
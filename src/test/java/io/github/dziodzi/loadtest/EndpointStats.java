@@ -0,0 +1,61 @@
+package io.github.dziodzi.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error count of one endpoint during a load test step.
+ * Latencies are recorded in microseconds and reported in milliseconds.
+ */
+final class EndpointStats {
+
+    static final String HEADER = String.format(Locale.ROOT, "%-16s %9s %9s %8s %9s %9s %9s %9s %9s",
+            "endpoint", "requests", "req/s", "errors", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms");
+
+    private final String endpoint;
+    private final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(5), 3);
+    private final LongAdder errors = new LongAdder();
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(long latencyNanos, boolean success) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), latencies.getHighestTrackableValue()));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    String summaryRow(double elapsedSeconds) {
+        long count = latencies.getTotalCount();
+        return String.format(Locale.ROOT, "%-16s %9d %9.1f %7.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f",
+                endpoint, count, count / elapsedSeconds,
+                count == 0 ? 0.0 : 100.0 * errors.sum() / count,
+                millis(0.50), millis(0.95), millis(0.99), millis(0.999),
+                latencies.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Writes the percentile distribution in the HdrHistogram .hgrm format, which the HdrHistogram
+     * plotter and most tooling read directly.
+     */
+    void writeHgrm(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            latencies.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private double millis(double quantile) {
+        return latencies.getValueAtPercentile(quantile * 100) / 1000.0;
+    }
+}
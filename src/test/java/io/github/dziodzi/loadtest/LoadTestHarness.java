@@ -0,0 +1,259 @@
+package io.github.dziodzi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.dziodzi.entity.Role;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.exchange.SignInRequest;
+import io.github.dziodzi.entity.exchange.SignUpRequest;
+import io.github.dziodzi.repository.UserRepository;
+import io.github.dziodzi.simulator.NeuralNetworkSimulator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end load test of the sign-in, upload and verification history endpoints. Starts the application
+ * against a Testcontainers Postgres and the neural network simulator, offers open-model load in steps and
+ * writes one HdrHistogram file per endpoint and step plus a summary table to {@code build/reports/loadtest}.
+ * <p>
+ * Run with {@code ./gradlew loadTest}; every setting can be overridden with a system property, e.g.
+ * {@code ./gradlew loadTest -Dloadtest.rates=50,100,200 -Dloadtest.mix=upload:80,history-all:20}.
+ * Requires Docker.
+ */
+@Tag("loadtest")
+@Testcontainers
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LoadTestHarness {
+
+    private static final String PASSWORD = "LoadTestPassword1";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final NeuralNetworkSimulator SIMULATOR = startSimulator();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("custom.neural-network.endpoints", SIMULATOR::getBaseUrl);
+        registry.add("storage.directory", Files.createTempDirectory("loadtest-storage")::toString);
+    }
+
+    @AfterAll
+    static void stopSimulator() {
+        SIMULATOR.close();
+    }
+
+    private static NeuralNetworkSimulator startSimulator() {
+        String[] args = setting("loadtest.nn-args", "--latency=lognormal:80,0.5").split(" ");
+        try {
+            return NeuralNetworkSimulator.start(NeuralNetworkSimulator.Profile.parse(args).port(0));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start the neural network simulator", e);
+        }
+    }
+
+    /**
+     * Offers every configured rate in turn and reports latency, errors and throughput per endpoint.
+     */
+    @Test
+    void runLoadSteps() throws Exception {
+        List<String> users = signUpUsers(Integer.parseInt(setting("loadtest.users", "20")));
+        List<String> tokens = new ArrayList<>();
+        for (String user : users) {
+            tokens.add(signIn(user));
+        }
+        String adminToken = signIn(createAdmin());
+        List<byte[]> images = images(Integer.parseInt(setting("loadtest.distinct-images", "50")));
+
+        List<OpenModelLoadGenerator.Scenario> scenarios = scenarios(users, tokens, adminToken, images);
+        Duration duration = Duration.ofSeconds(Long.parseLong(setting("loadtest.duration-s", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(setting("loadtest.warmup-s", "15")));
+        Path output = Path.of(setting("loadtest.output", "build/reports/loadtest"));
+        Files.createDirectories(output);
+
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator(client, scenarios, 42);
+        double[] rates = Arrays.stream(setting("loadtest.rates", "25,50,100").split(","))
+                .mapToDouble(rate -> Double.parseDouble(rate.trim()))
+                .toArray();
+        generator.run(rates[0], warmup, Duration.ofSeconds(30));
+
+        StringBuilder summary = new StringBuilder();
+        for (double rate : rates) {
+            Map<String, EndpointStats> stats = generator.run(rate, duration, Duration.ofSeconds(60));
+            summary.append(String.format("%nOffered load: %.0f req/s for %ds%n", rate, duration.toSeconds()))
+                    .append(EndpointStats.HEADER).append(System.lineSeparator());
+            for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+                entry.getValue().writeHgrm(output.resolve(entry.getKey() + "-" + (long) rate + "rps.hgrm"));
+                summary.append(entry.getValue().summaryRow(duration.toSeconds())).append(System.lineSeparator());
+            }
+        }
+        System.out.println(summary);
+        Files.writeString(output.resolve("summary.txt"), summary);
+    }
+
+    private List<OpenModelLoadGenerator.Scenario> scenarios(List<String> users, List<String> tokens,
+                                                            String adminToken, List<byte[]> images) {
+        Map<String, Supplier<HttpRequest>> requests = Map.of(
+                "sign-in", () -> {
+                    String user = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+                    return json("/auth/sign-in", new SignInRequest(user, PASSWORD, false));
+                },
+                "upload", () -> upload(tokens.get(ThreadLocalRandom.current().nextInt(tokens.size())),
+                        images.get(ThreadLocalRandom.current().nextInt(images.size()))),
+                "history-all", () -> get("/verification-history/all", adminToken),
+                "history-search", () -> get("/verification-history/search?result="
+                        + ThreadLocalRandom.current().nextInt(2), adminToken));
+
+        List<OpenModelLoadGenerator.Scenario> scenarios = new ArrayList<>();
+        for (String entry : setting("loadtest.mix", "sign-in:10,upload:60,history-all:15,history-search:15").split(",")) {
+            String[] weight = entry.split(":");
+            Supplier<HttpRequest> request = requests.get(weight[0].trim());
+            if (request == null) {
+                throw new IllegalArgumentException("Unknown endpoint in loadtest.mix: " + weight[0]
+                        + ", expected one of " + requests.keySet());
+            }
+            scenarios.add(new OpenModelLoadGenerator.Scenario(weight[0].trim(), Integer.parseInt(weight[1].trim()), request));
+        }
+        return scenarios;
+    }
+
+    private List<String> signUpUsers(int count) throws Exception {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String username = "loaduser" + i;
+            send(json("/auth/sign-up", new SignUpRequest(username, username + "@example.com", PASSWORD)));
+            users.add(username);
+        }
+        return users;
+    }
+
+    private String createAdmin() {
+        userRepository.save(User.builder()
+                .username("loadadmin")
+                .email("loadadmin@example.com")
+                .password(passwordEncoder.encode(PASSWORD))
+                .role(Role.ADMIN)
+                .build());
+        return "loadadmin";
+    }
+
+    private String signIn(String username) throws Exception {
+        String body = send(json("/auth/sign-in", new SignInRequest(username, PASSWORD, false)));
+        return objectMapper.readTree(body).get("jwtToken").asText();
+    }
+
+    private String send(HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private HttpRequest json(String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest upload(String token, byte[] image) {
+        String boundary = "loadtest" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"face.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        return HttpRequest.newBuilder(uri("/images/upload"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, image, tail)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /**
+     * Random-noise PNGs, so that every distinct image has its own content hash.
+     */
+    private static List<byte[]> images(int count) throws IOException {
+        Random random = new Random(7);
+        List<byte[]> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < 64; x++) {
+                for (int y = 0; y < 64; y++) {
+                    image.setRGB(x, y, random.nextInt(0x1000000));
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            images.add(out.toByteArray());
+        }
+        return images;
+    }
+
+    private static String setting(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue);
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.dziodzi.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-model load generator: requests arrive as a Poisson process at a fixed rate, independent of how fast
+ * the server answers, so a slow server builds up a backlog instead of silently lowering the offered load.
+ * Latency is measured from the scheduled arrival time, which keeps dispatcher lag from hiding queueing delay.
+ */
+final class OpenModelLoadGenerator {
+
+    record Scenario(String name, int weight, Supplier<HttpRequest> request) {
+    }
+
+    private final HttpClient client;
+    private final List<Scenario> scenarios;
+    private final int totalWeight;
+    private final Random random;
+
+    OpenModelLoadGenerator(HttpClient client, List<Scenario> scenarios, long seed) {
+        this.client = client;
+        this.scenarios = scenarios;
+        this.totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Offers load at the given rate for the given time and waits for the outstanding requests.
+     *
+     * @return statistics per scenario, in scenario order
+     */
+    Map<String, EndpointStats> run(double requestsPerSecond, Duration duration, Duration drainTimeout) {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        scenarios.forEach(scenario -> stats.put(scenario.name(), new EndpointStats(scenario.name())));
+        Queue<CompletableFuture<?>> outstanding = new ConcurrentLinkedQueue<>();
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long next = start;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Scenario scenario = pick();
+            EndpointStats endpoint = stats.get(scenario.name());
+            long scheduled = next;
+            try {
+                outstanding.add(client.sendAsync(scenario.request().get(), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> endpoint.record(System.nanoTime() - scheduled,
+                                error == null && response.statusCode() < 400)));
+            } catch (RuntimeException e) {
+                endpoint.record(System.nanoTime() - scheduled, false);
+            }
+            outstanding.removeIf(CompletableFuture::isDone);
+            next += (long) (-Math.log(1 - random.nextDouble()) / requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        try {
+            CompletableFuture.allOf(outstanding.toArray(CompletableFuture[]::new))
+                    .get(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.out.println("Gave up waiting for " + outstanding.stream().filter(f -> !f.isDone()).count()
+                    + " outstanding requests");
+        } catch (Exception e) {
+            // failures are already recorded per request
+        }
+        return stats;
+    }
+
+    private Scenario pick() {
+        int roll = random.nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            roll -= scenario.weight();
+            if (roll < 0) {
+                return scenario;
+            }
+        }
+        return scenarios.get(scenarios.size() - 1);
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.dziodzi.repository;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.Role;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.entity.exchange.VerificationHistoryFilter;
+import io.github.dziodzi.service.VerificationHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs verification history searches against Postgres with the Liquibase schema, so that the combined
+ * specifications and the keyset cursor are checked on real rows. Requires Docker and is skipped without it.
+ */
+@DataJpaTest
+@Testcontainers(disabledWithoutDocker = true)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(VerificationHistoryService.class)
+class VerificationHistorySearchIntegrationTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 10, 18, 12, 0);
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private VerificationHistoryService historyService;
+
+    private User alice;
+    private User bob;
+    private Image image;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        alice = entityManager.persist(User.builder().role(Role.USER).username("alice")
+                .email("alice@example.com").password("secret").build());
+        bob = entityManager.persist(User.builder().role(Role.USER).username("bob")
+                .email("bob@example.com").password("secret").build());
+        image = entityManager.persist(Image.builder().id("image-1").filepath("/images/image-1.png")
+                .uploadDate(NOON).build());
+    }
+
+    private void history(String id, User user, LocalDateTime date, double fakeProbability) {
+        entityManager.persist(VerificationHistory.builder()
+                .id(id)
+                .image(image)
+                .user(user)
+                .verificationDate(date)
+                .result("class_description: face, fake_probability: " + fakeProbability)
+                .fakeProbability(fakeProbability)
+                .build());
+    }
+
+    private static List<String> ids(PageResponse<VerificationHistory> page) {
+        return page.getItems().stream().map(VerificationHistory::getId).toList();
+    }
+
+    /**
+     * Verifies that a user filter and a probability filter are combined, and that following the cursor returns
+     * the remaining matches newest first, with rows sharing a date neither skipped nor repeated.
+     */
+    @Test
+    void whenFiltersAreCombinedAcrossPages_thenOnlyMatchingRowsAreReturnedOnce() {
+        history("h-1", alice, NOON.minusHours(3), 0.9);
+        history("h-2", alice, NOON.minusHours(2), 0.1);
+        history("h-3", alice, NOON.minusHours(1), 0.8);
+        history("h-4", alice, NOON.minusHours(1), 0.95);
+        history("h-5", bob, NOON, 0.99);
+        history("h-6", alice, NOON, 0.7);
+        entityManager.flush();
+        entityManager.clear();
+        VerificationHistoryFilter filter = VerificationHistoryFilter.builder()
+                .userId(alice.getId())
+                .minFakeProbability(0.5)
+                .build();
+
+        PageResponse<VerificationHistory> first = historyService.search(filter, null, 2);
+        PageResponse<VerificationHistory> second = historyService.search(filter, first.getNextCursor(), 2);
+
+        assertEquals(List.of("h-6", "h-4"), ids(first));
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of("h-3", "h-1"), ids(second));
+        assertNull(second.getNextCursor());
+        assertEquals("alice", second.getItems().get(0).getUser().getUsername());
+    }
+}
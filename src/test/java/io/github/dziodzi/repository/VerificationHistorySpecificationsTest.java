@@ -0,0 +1,80 @@
+package io.github.dziodzi.repository;
+
+import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.VerificationHistoryFilter;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the VerificationHistorySpecifications class, checking the predicates built from a filter.
+ */
+class VerificationHistorySpecificationsTest {
+
+    private Root<VerificationHistory> root;
+    private CriteriaQuery<?> query;
+    private CriteriaBuilder builder;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        root = mock(Root.class, RETURNS_DEEP_STUBS);
+        query = mock(CriteriaQuery.class);
+        builder = mock(CriteriaBuilder.class);
+        doReturn(VerificationHistory.class).when(query).getResultType();
+    }
+
+    /**
+     * Verifies that all supplied filters are combined into one query, and absent ones add no predicate.
+     */
+    @Test
+    void whenSeveralFiltersAreSupplied_thenAllOfThemArePredicates() {
+        LocalDateTime from = LocalDateTime.of(2026, 10, 1, 0, 0);
+        VerificationHistoryFilter filter = VerificationHistoryFilter.builder()
+                .imageId("image-1")
+                .userId(7L)
+                .from(from)
+                .build();
+
+        Path<Object> imageId = root.get("image").get("id");
+        Path<Object> userId = root.get("user").get("id");
+        Path<LocalDateTime> verificationDate = root.get("verificationDate");
+        Path<Object> result = root.get("result");
+
+        VerificationHistorySpecifications.matching(filter).toPredicate(root, query, builder);
+
+        verify(builder).equal(imageId, "image-1");
+        verify(builder).equal(userId, 7L);
+        verify(builder).greaterThanOrEqualTo(verificationDate, from);
+        verify(builder, never()).lessThan(any(), any(LocalDateTime.class));
+        verify(builder, never()).equal(eq(result), any(Object.class));
+        verify(root).fetch("image");
+        verify(root).fetch("user");
+    }
+
+    /**
+     * Verifies that count queries do not fetch the associations.
+     */
+    @Test
+    void whenQueryCountsRows_thenAssociationsAreNotFetched() {
+        doReturn(Long.class).when(query).getResultType();
+
+        VerificationHistorySpecifications.matching(new VerificationHistoryFilter()).toPredicate(root, query, builder);
+
+        verify(root, never()).fetch("image");
+        verify(root, never()).fetch("user");
+    }
+}
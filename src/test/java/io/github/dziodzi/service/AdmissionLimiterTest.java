@@ -0,0 +1,123 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the AdmissionLimiter class.
+ */
+class AdmissionLimiterTest {
+
+    private AdmissionLimiter limiter(int initialLimit, int maxQueue, long maxWaitMs) {
+        return new AdmissionLimiter(new SimpleMeterRegistry(), true, initialLimit, 1, 100, maxQueue, maxWaitMs, 2.0);
+    }
+
+    /**
+     * Verifies that a call above the limit is shed with a Retry-After hint once its wait times out.
+     */
+    @Test
+    void whenLimitIsReached_thenCallIsRejected() throws Exception {
+        AdmissionLimiter limiter = limiter(1, 1, 20);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> limiter.execute(() -> {
+            started.countDown();
+            await(release);
+            return "done";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class, () -> limiter.execute(() -> "late"));
+        assertTrue(e.getRetryAfterSeconds() >= 1);
+
+        release.countDown();
+        assertEquals("done", running.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * Verifies that the up-front check sheds callers only while every slot is taken and the queue is full.
+     */
+    @Test
+    void whenLimiterIsSaturated_thenAdmissionCheckFails() throws Exception {
+        AdmissionLimiter limiter = limiter(1, 0, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        limiter.checkAdmission();
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> limiter.execute(() -> {
+            started.countDown();
+            await(release);
+            return "done";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(TooManyRequestsException.class, limiter::checkAdmission);
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        limiter.checkAdmission();
+    }
+
+    /**
+     * Verifies that a waiting call proceeds when a slot is released within the wait time.
+     */
+    @Test
+    void whenSlotIsReleasedInTime_thenWaitingCallProceeds() throws Exception {
+        AdmissionLimiter limiter = limiter(1, 1, 2000);
+        CountDownLatch started = new CountDownLatch(1);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> limiter.execute(() -> {
+            started.countDown();
+            sleep(50);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals("second", limiter.execute(() -> "second"));
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Verifies that server-side failures shrink the limit down to its minimum.
+     */
+    @Test
+    void whenModelServerFails_thenLimitShrinks() {
+        AdmissionLimiter limiter = limiter(20, 0, 0);
+
+        for (int i = 0; i < 30; i++) {
+            assertThrows(NeuralNetworkException.class, () -> limiter.execute(() -> {
+                throw new NeuralNetworkException("Model is down", 500);
+            }));
+        }
+
+        assertEquals(1, limiter.getLimit());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.exchange.BatchUploadItemResponse;
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.entity.exchange.ResponseWrapper;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the BatchUploadService class, with a mocked upload pipeline and a real worker pool.
+ */
+class BatchUploadServiceTest {
+
+    private final ResultSenderService resultSender = mock(ResultSenderService.class);
+    private final AdmissionLimiter admissionLimiter = mock(AdmissionLimiter.class);
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final User user = User.builder().id(1L).username("alice").build();
+    private BatchUploadService batchUploadService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor.setCorePoolSize(4);
+        executor.initialize();
+        batchUploadService = new BatchUploadService(resultSender, admissionLimiter, executor);
+        ReflectionTestUtils.setField(batchUploadService, "maxFiles", 100);
+        ReflectionTestUtils.setField(batchUploadService, "requestParallelism", 2);
+        when(resultSender.getCurrentUser()).thenReturn(user);
+        when(resultSender.storeImage(any())).thenAnswer(invocation -> Image.builder()
+                .id(invocation.<MultipartFile>getArgument(0).getOriginalFilename())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private static MultipartFile file(String name) {
+        return new MockMultipartFile("files", name, "image/png", new byte[16]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<BatchUploadItemResponse> items(ResponseWrapper response) {
+        return (List<BatchUploadItemResponse>) response.getData();
+    }
+
+    /**
+     * Verifies that a failing file gets its own error result while the other files succeed.
+     */
+    @Test
+    void whenOneFileFails_thenOnlyItsResultIsAnError() throws Exception {
+        MultipartFile broken = file("broken.png");
+        when(resultSender.storeImage(broken)).thenThrow(new IOException("Unreadable image"));
+        when(resultSender.verifyImage(any(), eq(user))).thenReturn(new PredictionResponse());
+
+        ResponseWrapper response = batchUploadService.handleBatchUpload(
+                List.of(file("a.png"), broken, file("c.png")));
+
+        assertEquals(200, response.getStatusCode());
+        List<BatchUploadItemResponse> items = items(response);
+        assertEquals(List.of(200, 400, 200), items.stream().map(BatchUploadItemResponse::getStatusCode).toList());
+        assertEquals("Unreadable image", items.get(1).getMessage());
+        assertEquals("c.png", items.get(2).getImageId());
+    }
+
+    /**
+     * Verifies that results keep the upload order when later files finish first, and that no more files of one
+     * request run at the same time than its parallelism allows.
+     */
+    @Test
+    void whenFilesFinishOutOfOrder_thenResultsKeepUploadOrder() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(resultSender.verifyImage(any(), eq(user))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            String id = invocation.<Image>getArgument(0).getId();
+            Thread.sleep(id.equals("file-0.png") ? 200 : 20);
+            running.decrementAndGet();
+            PredictionResponse prediction = new PredictionResponse();
+            prediction.setImageName(id);
+            return prediction;
+        });
+        List<MultipartFile> files = IntStream.range(0, 6).mapToObj(i -> file("file-" + i + ".png")).toList();
+
+        List<BatchUploadItemResponse> items = items(batchUploadService.handleBatchUpload(files));
+
+        assertEquals(files.stream().map(MultipartFile::getOriginalFilename).toList(),
+                items.stream().map(item -> item.getResult().getImageName()).toList());
+        assertTrue(maxRunning.get() <= 2, "At most 2 files of the request should run at once: " + maxRunning.get());
+    }
+
+    /**
+     * Verifies that a file whose verification is shed is discarded, and that a saturated limiter refuses files
+     * before they are stored.
+     */
+    @Test
+    void whenVerificationIsShed_thenStoredImageIsDiscarded() throws Exception {
+        MultipartFile shed = file("shed.png");
+        MultipartFile refused = file("refused.png");
+        when(resultSender.verifyImage(any(), eq(user))).thenThrow(new TooManyRequestsException("Saturated", 1));
+
+        List<BatchUploadItemResponse> first = items(batchUploadService.handleBatchUpload(List.of(shed)));
+        doThrow(new TooManyRequestsException("Saturated", 1)).when(admissionLimiter).checkAdmission();
+        List<BatchUploadItemResponse> second = items(batchUploadService.handleBatchUpload(List.of(refused)));
+
+        assertEquals(429, first.get(0).getStatusCode());
+        verify(resultSender).discard(argThat(image -> image.getId().equals("shed.png")));
+        assertEquals(429, second.get(0).getStatusCode());
+        verify(resultSender, never()).storeImage(refused);
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Java stand-in for the model server speaking {@link BinaryProtocol}.
+ * Requests are handled concurrently, so responses on a connection may come back in a different order
+ * than the requests were sent. A handler throwing {@link NeuralNetworkException} produces an ERROR frame.
+ */
+class BinaryModelServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Function<BinaryProtocol.PredictRequest, PredictionResponse> handler;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private volatile boolean answerPings = true;
+
+    BinaryModelServer(Function<BinaryProtocol.PredictRequest, PredictionResponse> handler) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.handler = handler;
+        Thread acceptor = new Thread(this::accept, "binary-model-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Makes the server ignore PING frames, as a hanging model server would.
+     */
+    void ignorePings() {
+        answerPings = false;
+    }
+
+    /**
+     * Drops every open connection, as a crashing model server would.
+     */
+    void dropConnections() throws IOException {
+        for (Socket connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+        workers.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                BinaryProtocol.Frame frame = BinaryProtocol.readFrame(in);
+                switch (frame.type()) {
+                    case BinaryProtocol.PING -> {
+                        if (answerPings) {
+                            write(out, BinaryProtocol.PONG, frame.correlationId(), new byte[0]);
+                        }
+                    }
+                    case BinaryProtocol.PREDICT -> workers.execute(() -> respond(out, frame));
+                    default -> write(out, BinaryProtocol.ERROR, frame.correlationId(),
+                            BinaryProtocol.encodeError(400, "Unknown frame type " + frame.type()));
+                }
+            }
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    private void respond(DataOutputStream out, BinaryProtocol.Frame frame) {
+        try {
+            PredictionResponse prediction = handler.apply(BinaryProtocol.decodePredict(frame.payload()));
+            write(out, BinaryProtocol.PREDICTION, frame.correlationId(), BinaryProtocol.encodePrediction(prediction));
+        } catch (NeuralNetworkException e) {
+            write(out, BinaryProtocol.ERROR, frame.correlationId(),
+                    BinaryProtocol.encodeError(e.getStatusCode(), e.getMessage()));
+        }
+    }
+
+    private static void write(DataOutputStream out, byte type, int correlationId, byte[] payload) {
+        try {
+            synchronized (out) {
+                BinaryProtocol.writeFrame(out, type, correlationId, payload);
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+}
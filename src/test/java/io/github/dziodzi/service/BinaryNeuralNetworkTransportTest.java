@@ -0,0 +1,174 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the BinaryNeuralNetworkTransport class against a Java stand-in model server.
+ */
+class BinaryNeuralNetworkTransportTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final long PING_INTERVAL_MS = 100;
+
+    private BinaryModelServer server;
+    private BinaryNeuralNetworkTransport transport;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (transport != null) {
+            transport.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private void start(Function<BinaryProtocol.PredictRequest, PredictionResponse> handler)
+            throws Exception {
+        server = new BinaryModelServer(handler);
+        transport = new BinaryNeuralNetworkTransport(server.getPort(), 1, 1000, PING_INTERVAL_MS);
+    }
+
+    private static PredictionResponse prediction(String description, int predictedClass) {
+        PredictionResponse prediction = new PredictionResponse();
+        prediction.setPredictedClass(predictedClass);
+        prediction.setClassDescription(description);
+        prediction.setFakeProbability(0.25);
+        return prediction;
+    }
+
+    private static Resource image(String name, int size) {
+        return new ByteArrayResource(new byte[size]) {
+            @Override
+            public String getFilename() {
+                return name;
+            }
+        };
+    }
+
+    /**
+     * Verifies that concurrent requests on one connection get their own predictions even when answered out of order.
+     */
+    @Test
+    void whenRequestsAreMultiplexed_thenEachGetsItsOwnPrediction() throws Exception {
+        start(request -> {
+            sleep(request.image().length % 7 * 10L);
+            return prediction(request.filename(), request.image().length);
+        });
+
+        List<CompletableFuture<PredictionResponse>> futures = IntStream.range(1, 40)
+                .mapToObj(i -> CompletableFuture.supplyAsync(
+                        () -> transport.predict("http://localhost:5001", image("img-" + i, i), TIMEOUT)))
+                .toList();
+
+        for (int i = 1; i < 40; i++) {
+            PredictionResponse prediction = futures.get(i - 1).get(10, TimeUnit.SECONDS);
+            assertEquals("img-" + i, prediction.getClassDescription());
+            assertEquals(i, prediction.getPredictedClass());
+            assertEquals(0.25, prediction.getFakeProbability());
+        }
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    /**
+     * Verifies that an ERROR frame is reported with the status sent by the model server.
+     */
+    @Test
+    void whenModelServerRejectsImage_thenStatusIsPropagated() throws Exception {
+        start(request -> {
+            throw new NeuralNetworkException("No face found", 422);
+        });
+
+        NeuralNetworkException e = assertThrows(NeuralNetworkException.class,
+                () -> transport.predict("http://localhost:5001", image("img", 10), TIMEOUT));
+        assertEquals(422, e.getStatusCode());
+        assertTrue(e.getMessage().contains("No face found"));
+    }
+
+    /**
+     * Verifies that pending requests fail with 503 when the connection drops and the next call reconnects.
+     */
+    @Test
+    void whenConnectionDrops_thenPendingRequestsFailAndNextCallReconnects() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start(request -> {
+            if ("slow".equals(request.filename())) {
+                received.countDown();
+                await(release);
+            }
+            return prediction(request.filename(), 1);
+        });
+
+        CompletableFuture<PredictionResponse> pending = CompletableFuture.supplyAsync(
+                () -> transport.predict("http://localhost:5001", image("slow", 10), TIMEOUT));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        server.dropConnections();
+
+        Exception e = assertThrows(Exception.class, () -> pending.get(5, TimeUnit.SECONDS));
+        assertEquals(503, ((NeuralNetworkException) e.getCause()).getStatusCode());
+        release.countDown();
+
+        assertEquals("fast", transport.predict("http://localhost:5001", image("fast", 10), TIMEOUT)
+                .getClassDescription());
+    }
+
+    /**
+     * Verifies that an idle connection whose PINGs are answered is kept, and that it is replaced once the model
+     * server stops answering them.
+     */
+    @Test
+    void whenPingIsNotAnswered_thenConnectionIsReplaced() throws Exception {
+        start(request -> prediction(request.filename(), 1));
+        transport.predict("http://localhost:5001", image("first", 10), TIMEOUT);
+
+        sleep(PING_INTERVAL_MS + 50);
+        transport.sendKeepalives();
+        sleep(PING_INTERVAL_MS + 50);
+        transport.sendKeepalives();
+        transport.predict("http://localhost:5001", image("second", 10), TIMEOUT);
+        assertEquals(1, server.getConnectionCount());
+
+        server.ignorePings();
+        sleep(PING_INTERVAL_MS + 50);
+        transport.sendKeepalives();
+        sleep(PING_INTERVAL_MS + 50);
+        transport.sendKeepalives();
+        assertEquals("third", transport.predict("http://localhost:5001", image("third", 10), TIMEOUT)
+                .getClassDescription());
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
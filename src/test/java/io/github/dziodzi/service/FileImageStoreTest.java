@@ -0,0 +1,158 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the FileImageStore class, with image rows counted per location in a map.
+ */
+class FileImageStoreTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @TempDir
+    Path root;
+
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private FileImageStore storage;
+
+    @BeforeEach
+    void setUp() {
+        ImageRepository imageRepository = mock(ImageRepository.class);
+        when(imageRepository.countByFilepath(anyString()))
+                .thenAnswer(invocation -> (long) references.getOrDefault(invocation.<String>getArgument(0), 0));
+        storage = new FileImageStore(new ImageIngestor(8192, 2), imageRepository,
+                new SimpleMeterRegistry(), root.toString(), 2, 2);
+    }
+
+    private static byte[] png(long seed) {
+        byte[] content = new byte[10_000];
+        new Random(seed).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return content;
+    }
+
+    private ImageStore.StoredImage store(byte[] content) throws Exception {
+        return storage.store(new ByteArrayInputStream(content), stored -> {
+            references.merge(stored.location(), 1, Integer::sum);
+            return stored;
+        });
+    }
+
+    private void release(ImageStore.StoredImage stored) {
+        Image image = Image.builder().contentHash(stored.contentHash()).filepath(stored.location()).build();
+        storage.release(image, () -> references.merge(stored.location(), -1, Integer::sum));
+    }
+
+    /**
+     * Verifies that a file is named after its content hash and placed in nested prefix directories.
+     */
+    @Test
+    void whenImageIsStored_thenItIsPlacedInItsShard() throws Exception {
+        byte[] content = png(1);
+
+        ImageStore.StoredImage stored = store(content);
+
+        String hash = stored.contentHash();
+        Path expected = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + ".png");
+        assertEquals(expected.toString(), stored.location());
+        assertArrayEquals(content, Files.readAllBytes(expected));
+        assertTrue(storage.owns(stored.location()));
+        assertFalse(storage.owns(root.resolve("0f8fad5b_face.png").toString()));
+    }
+
+    /**
+     * Verifies that identical uploads share one file, which is deleted only with its last reference.
+     */
+    @Test
+    void whenDuplicateIsReleased_thenFileIsKeptUntilLastReference() throws Exception {
+        ImageStore.StoredImage first = store(png(2));
+        ImageStore.StoredImage second = store(png(2));
+
+        assertEquals(first.location(), second.location());
+        assertTrue(second.deduplicated());
+
+        release(first);
+        assertTrue(Files.exists(Path.of(second.location())));
+        release(second);
+        assertFalse(Files.exists(Path.of(second.location())));
+    }
+
+    /**
+     * Verifies that a new file is removed again when its row cannot be saved.
+     */
+    @Test
+    void whenRegisteringFails_thenFileIsRemoved() throws Exception {
+        byte[] content = png(3);
+
+        assertThrows(IllegalStateException.class, () -> storage.store(new ByteArrayInputStream(content), stored -> {
+            throw new IllegalStateException("Database is down");
+        }));
+
+        ImageStore.StoredImage stored = store(content);
+        assertFalse(stored.deduplicated());
+    }
+
+    /**
+     * Verifies that a file from the flat layout is linked into its shard and can be read from there.
+     */
+    @Test
+    void whenFlatFileIsAdopted_thenItIsReadFromItsShard() throws Exception {
+        byte[] content = png(4);
+        Path flat = root.resolve("0f8fad5b-d9cb-469f-a165-70867728950e_face.png");
+        Files.write(flat, content);
+
+        ImageStore.StoredImage adopted = storage.adopt(flat, stored -> stored);
+        Files.delete(flat);
+
+        assertEquals(store(content).location(), adopted.location());
+        Image image = Image.builder().contentHash(adopted.contentHash()).filepath(adopted.location()).build();
+        assertArrayEquals(content, storage.read(image).getContentAsByteArray());
+    }
+
+    /**
+     * Verifies that a row pointing outside the store is neither served nor deleted on release.
+     */
+    @Test
+    void whenLocationIsOutsideTheStore_thenItIsNotReadOrDeleted() throws Exception {
+        byte[] content = png(5);
+        String contentHash = store(content).contentHash();
+        Path outside = Files.createTempFile("outside", ".png");
+        try {
+            Image image = Image.builder().contentHash(contentHash).filepath(outside.toString()).build();
+            Image traversal = Image.builder().contentHash(contentHash)
+                    .filepath(root.resolve("ab").resolve("..").resolve("..").resolve(outside.getFileName()).toString())
+                    .build();
+
+            assertThrows(NoSuchFileException.class, () -> storage.read(image));
+            assertThrows(NoSuchFileException.class, () -> storage.read(traversal));
+            storage.release(image, () -> {
+            });
+
+            assertTrue(Files.exists(outside));
+        } finally {
+            Files.deleteIfExists(outside);
+        }
+    }
+}
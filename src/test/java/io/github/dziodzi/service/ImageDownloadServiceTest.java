@@ -0,0 +1,135 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the ImageDownloadService class, serving an image from a file store.
+ */
+class ImageDownloadServiceTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @TempDir
+    Path root;
+
+    private final byte[] content = new byte[100_000];
+    private ImageDownloadService downloads;
+    private Image image;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        new Random(1).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        FileImageStore store = new FileImageStore(new ImageIngestor(8192, 2), mock(ImageRepository.class),
+                new SimpleMeterRegistry(), root.toString(), 2, 2);
+        image = store.store(new ByteArrayInputStream(content), stored -> Image.builder()
+                .id("image-1").contentHash(stored.contentHash()).filepath(stored.location()).build());
+
+        ImageService imageService = mock(ImageService.class);
+        when(imageService.getById("image-1")).thenReturn(image);
+        downloads = new ImageDownloadService(imageService, store);
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloads.download("image-1", request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/images/image-1/content");
+    }
+
+    /**
+     * Verifies that the whole image is sent with its content type and a strong ETag.
+     */
+    @Test
+    void whenImageIsRequested_thenItIsSentWithETag() throws Exception {
+        MockHttpServletResponse response = download(get());
+
+        assertEquals(200, response.getStatus());
+        assertEquals("\"" + image.getContentHash() + "\"", response.getHeader("ETag"));
+        assertEquals("image/png", response.getContentType());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    /**
+     * Verifies that a matching If-None-Match header is answered with 304 and no body.
+     */
+    @Test
+    void whenETagMatches_thenNotModifiedIsReturned() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader("If-None-Match", "\"" + image.getContentHash() + "\"");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    /**
+     * Verifies that a single byte range is answered with 206 and only the requested bytes.
+     */
+    @Test
+    void whenRangeIsRequested_thenOnlyThatRangeIsSent() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader("Range", "bytes=1000-1999");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 1000-1999/100000", response.getHeader("Content-Range"));
+        assertEquals(1000, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), response.getContentAsByteArray());
+    }
+
+    /**
+     * Verifies that a range beyond the end of the image is answered with 416.
+     */
+    @Test
+    void whenRangeIsNotSatisfiable_thenRangeNotSatisfiableIsReturned() throws Exception {
+        MockHttpServletRequest request = get();
+        request.addHeader("Range", "bytes=200000-");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100000", response.getHeader("Content-Range"));
+    }
+
+    /**
+     * Verifies that the file is handed to the container when it supports sendfile.
+     */
+    @Test
+    void whenContainerSupportsSendfile_thenTheFileIsHandedOver() throws Exception {
+        MockHttpServletRequest request = get();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=-500");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(image.getFilepath(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(99_500L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(100_000L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.dziodzi.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the ImageIngestor class.
+ */
+class ImageIngestorTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @TempDir
+    Path storage;
+
+    private final ImageIngestor ingestor = new ImageIngestor(8192, 2);
+
+    /**
+     * Verifies that an image larger than the buffer is copied byte for byte and hashed correctly.
+     */
+    @Test
+    void whenContentIsImage_thenItIsWrittenAndHashed() throws Exception {
+        byte[] content = new byte[50_000];
+        new Random(42).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        Path destination = storage.resolve("image.png");
+
+        ImageIngestor.IngestResult result = ingestor.ingest(new ByteArrayInputStream(content), destination);
+
+        assertEquals("image/png", result.mimeType());
+        assertEquals(content.length, result.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)), result.contentHash());
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    /**
+     * Verifies that non-image content is rejected before anything is written to disk.
+     */
+    @Test
+    void whenContentIsNotImage_thenNothingIsWritten() {
+        Path destination = storage.resolve("notes.png");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ingestor.ingest(new ByteArrayInputStream("just some text".getBytes()), destination));
+        assertFalse(Files.exists(destination));
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.dziodzi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the ImagePreprocessor class.
+ */
+class ImagePreprocessorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ImagePreprocessor preprocessor;
+
+    @BeforeEach
+    void setUp() {
+        preprocessor = new ImagePreprocessor(meterRegistry);
+        ReflectionTestUtils.setField(preprocessor, "enabled", true);
+        ReflectionTestUtils.setField(preprocessor, "maxDimension", 512);
+        ReflectionTestUtils.setField(preprocessor, "format", "jpg");
+        ReflectionTestUtils.setField(preprocessor, "quality", 0.9f);
+    }
+
+    private static Resource png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return named(output.toByteArray(), "face.png");
+    }
+
+    private static Resource named(byte[] content, String filename) {
+        return new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    /**
+     * Verifies that an image larger than the maximum dimension is downscaled and re-encoded.
+     */
+    @Test
+    void whenImageIsOversized_thenItIsDownscaled() throws Exception {
+        BufferedImage noise = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < noise.getHeight(); y++) {
+            for (int x = 0; x < noise.getWidth(); x++) {
+                noise.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        Resource original = png(noise);
+
+        Resource prepared = preprocessor.prepare(original);
+
+        assertNotSame(original, prepared);
+        assertEquals("face.jpg", prepared.getFilename());
+        assertTrue(prepared.contentLength() < original.contentLength());
+        BufferedImage decoded = ImageIO.read(prepared.getInputStream());
+        assertEquals(512, decoded.getWidth());
+        assertEquals(256, decoded.getHeight());
+        assertEquals(original.contentLength() - prepared.contentLength(),
+                meterRegistry.counter("nn.preprocess.bytes.saved").count());
+    }
+
+    /**
+     * Verifies that the original is sent when re-encoding a small image would make it larger.
+     */
+    @Test
+    void whenReencodedImageIsNotSmaller_thenOriginalIsSent() throws Exception {
+        Resource original = png(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB));
+
+        assertSame(original, preprocessor.prepare(original));
+        assertEquals(0, meterRegistry.counter("nn.preprocess.bytes.saved").count());
+    }
+
+    /**
+     * Verifies that content no image reader understands is sent as it is.
+     */
+    @Test
+    void whenImageCannotBeDecoded_thenOriginalIsSent() {
+        Resource original = named("not an image".getBytes(), "face.png");
+
+        assertSame(original, preprocessor.prepare(original));
+    }
+}
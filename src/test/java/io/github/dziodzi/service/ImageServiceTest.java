@@ -0,0 +1,61 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the ImageService class.
+ */
+class ImageServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageStore imageStore;
+
+    private ImageService imageService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(imageStore).release(any(), any());
+        imageService = new ImageService(imageRepository, imageStore);
+    }
+
+    /**
+     * Verifies that pointing an image to another file clears its content hash and releases the old file.
+     */
+    @Test
+    void whenFilepathIsUpdated_thenContentHashIsClearedAndOldFileIsReleased() {
+        Image image = Image.builder().id("image-1").filepath("/store/ab/hash.png").contentHash("hash").build();
+        when(imageRepository.findById("image-1")).thenReturn(Optional.of(image));
+
+        imageService.updateFilepath("image-1", "/images/other.png");
+
+        ArgumentCaptor<Image> released = ArgumentCaptor.forClass(Image.class);
+        verify(imageStore).release(released.capture(), any());
+        assertEquals("/store/ab/hash.png", released.getValue().getFilepath());
+        assertEquals("hash", released.getValue().getContentHash());
+        verify(imageRepository).save(image);
+        assertEquals("/images/other.png", image.getFilepath());
+        assertNull(image.getContentHash());
+    }
+}
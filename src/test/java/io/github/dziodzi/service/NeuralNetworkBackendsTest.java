@@ -0,0 +1,164 @@
+package io.github.dziodzi.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the NeuralNetworkBackends class.
+ */
+class NeuralNetworkBackendsTest {
+
+    private NeuralNetworkBackends backends(String endpoints) {
+        return new NeuralNetworkBackends(new SimpleMeterRegistry(), endpoints, "http://localhost:5001",
+                "/health", 100, 3, 60000, 300000, 3.0);
+    }
+
+    /**
+     * Verifies that the default endpoint is used when no endpoint list is configured.
+     */
+    @Test
+    void whenNoEndpointsAreConfigured_thenDefaultEndpointIsUsed() {
+        NeuralNetworkBackends backends = backends("");
+
+        assertEquals(List.of("http://localhost:5001"),
+                backends.getBackends().stream().map(NeuralNetworkBackends.Backend::getUrl).toList());
+    }
+
+    /**
+     * Verifies that with two backends the one with fewer calls in flight is chosen.
+     */
+    @Test
+    void whenOneBackendIsBusy_thenOtherBackendIsChosen() {
+        NeuralNetworkBackends backends = backends("http://nn-1:5001, http://nn-2:5001/");
+        NeuralNetworkBackends.Backend busy = backends.getBackends().get(0);
+        busy.onStart();
+        busy.onStart();
+
+        for (int i = 0; i < 20; i++) {
+            assertSame(backends.getBackends().get(1), backends.choose());
+        }
+    }
+
+    /**
+     * Verifies that a backend is ejected after consecutive server errors, but not after client errors.
+     */
+    @Test
+    void whenBackendKeepsFailing_thenItIsEjected() {
+        NeuralNetworkBackends backends = backends("http://nn-1:5001,http://nn-2:5001");
+        NeuralNetworkBackends.Backend failing = backends.getBackends().get(0);
+
+        for (int i = 0; i < 5; i++) {
+            failing.onFailure(failing.onStart(), false);
+        }
+        assertTrue(failing.isAvailable(System.currentTimeMillis()));
+
+        for (int i = 0; i < 3; i++) {
+            failing.onFailure(failing.onStart(), true);
+        }
+        assertFalse(failing.isAvailable(System.currentTimeMillis()));
+        for (int i = 0; i < 20; i++) {
+            assertSame(backends.getBackends().get(1), backends.choose());
+        }
+    }
+
+    /**
+     * Verifies that with two backends the one slower than the latency factor allows is ejected.
+     */
+    @Test
+    void whenOneOfTwoBackendsIsSlow_thenItIsEjected() {
+        NeuralNetworkBackends backends = backends("http://nn-1:5001,http://nn-2:5001");
+        NeuralNetworkBackends.Backend fast = backends.getBackends().get(0);
+        NeuralNetworkBackends.Backend slow = backends.getBackends().get(1);
+        fast.onStart();
+        fast.onSuccess(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10));
+        slow.onStart();
+        slow.onSuccess(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100));
+
+        backends.ejectLatencyOutliers();
+
+        long now = System.currentTimeMillis();
+        assertTrue(fast.isAvailable(now));
+        assertFalse(slow.isAvailable(now));
+    }
+
+    /**
+     * Verifies that a backend ejected for its latency is measured afresh once the ejection ends, instead of being
+     * ejected again for the latency it had before.
+     */
+    @Test
+    void whenLatencyEjectionEnds_thenOldLatencyIsNotHeldAgainstBackend() {
+        NeuralNetworkBackends backends = backends("http://nn-1:5001,http://nn-2:5001");
+        NeuralNetworkBackends.Backend fast = backends.getBackends().get(0);
+        NeuralNetworkBackends.Backend slow = backends.getBackends().get(1);
+        fast.onStart();
+        fast.onSuccess(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10));
+        slow.onStart();
+        slow.onSuccess(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100));
+        backends.ejectLatencyOutliers();
+
+        ReflectionTestUtils.setField(slow, "ejectedUntil", 0L);
+        backends.ejectLatencyOutliers();
+
+        assertEquals(0, slow.getLatencyMs());
+        assertTrue(slow.isAvailable(System.currentTimeMillis()));
+    }
+
+    /**
+     * Verifies that a latency measured long ago does not get a backend ejected.
+     */
+    @Test
+    void whenLatencyIsStale_thenBackendIsNotEjected() {
+        NeuralNetworkBackends backends = backends("http://nn-1:5001,http://nn-2:5001");
+        NeuralNetworkBackends.Backend fast = backends.getBackends().get(0);
+        NeuralNetworkBackends.Backend slow = backends.getBackends().get(1);
+        fast.onStart();
+        fast.onSuccess(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10));
+        slow.onStart();
+        slow.onSuccess(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100));
+        ReflectionTestUtils.setField(slow, "lastSampleAt", System.currentTimeMillis() - 120_000);
+
+        backends.ejectLatencyOutliers();
+
+        assertTrue(slow.isAvailable(System.currentTimeMillis()));
+    }
+
+    /**
+     * Verifies that a health endpoint answering with a client error marks the backend unhealthy.
+     */
+    @Test
+    void whenHealthCheckIsNotSuccessful_thenBackendIsUnhealthy() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ok", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String endpoint = "http://localhost:" + server.getAddress().getPort();
+            NeuralNetworkBackends missing = new NeuralNetworkBackends(new SimpleMeterRegistry(), endpoint, endpoint,
+                    "/missing", 1000, 3, 60000, 300000, 3.0);
+            NeuralNetworkBackends healthy = new NeuralNetworkBackends(new SimpleMeterRegistry(), endpoint, endpoint,
+                    "/ok", 1000, 3, 60000, 300000, 3.0);
+
+            missing.checkHealth();
+            healthy.checkHealth();
+
+            long now = System.currentTimeMillis();
+            assertFalse(missing.getBackends().get(0).isAvailable(now));
+            assertTrue(healthy.getBackends().get(0).isAvailable(now));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the NeuralNetworkBatcher class, with a mocked neural network client.
+ * The batching window is long, so batches are only dispatched early when they are full.
+ */
+class NeuralNetworkBatcherTest {
+
+    private static final int CALLERS = 4;
+
+    private final NeuralNetworkClient client = mock(NeuralNetworkClient.class);
+    private final ThreadPoolTaskExecutor dispatcher = new ThreadPoolTaskExecutor();
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    private NeuralNetworkBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+        dispatcher.shutdown();
+        callers.shutdownNow();
+    }
+
+    private void startBatcher(int maxBatchSize) {
+        dispatcher.setCorePoolSize(2);
+        dispatcher.initialize();
+        batcher = new NeuralNetworkBatcher(client, dispatcher, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(batcher, "maxWaitMs", 10000L);
+        ReflectionTestUtils.setField(batcher, "readTimeoutMs", 30000L);
+        batcher.start();
+    }
+
+    private static Resource image(int index) {
+        return new ByteArrayResource(new byte[]{(byte) index}) {
+            @Override
+            public String getFilename() {
+                return "image-" + index + ".png";
+            }
+        };
+    }
+
+    private static PredictionResponse prediction(Resource image) {
+        PredictionResponse prediction = new PredictionResponse();
+        prediction.setImageName(image.getFilename());
+        return prediction;
+    }
+
+    private List<CompletableFuture<PredictionResponse>> predictConcurrently() {
+        List<CompletableFuture<PredictionResponse>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Resource image = image(i);
+            results.add(CompletableFuture.supplyAsync(() -> batcher.predict(image), callers));
+        }
+        return results;
+    }
+
+    private static List<PredictionResponse> answer(List<Resource> images) {
+        return images.stream().map(NeuralNetworkBatcherTest::prediction).toList();
+    }
+
+    /**
+     * Verifies that concurrent requests are sent as one batch call and every caller gets its own prediction.
+     */
+    @Test
+    void whenRequestsArriveTogether_thenTheyAreSentAsOneBatch() {
+        startBatcher(CALLERS);
+        when(client.sendImagesToPrediction(anyList())).thenAnswer(invocation -> answer(invocation.getArgument(0)));
+
+        List<CompletableFuture<PredictionResponse>> results = predictConcurrently();
+
+        for (int i = 0; i < CALLERS; i++) {
+            assertEquals("image-" + i + ".png", results.get(i).orTimeout(5, TimeUnit.SECONDS).join().getImageName());
+        }
+        verify(client).sendImagesToPrediction(argThat(images -> images.size() == CALLERS));
+        verify(client, never()).sendImageToPrediction(any(Resource.class));
+    }
+
+    /**
+     * Verifies that more concurrent requests than the maximum batch size are split into several batches.
+     */
+    @Test
+    void whenRequestsExceedMaxBatchSize_thenBatchesAreSplit() {
+        startBatcher(2);
+        when(client.sendImagesToPrediction(anyList())).thenAnswer(invocation -> answer(invocation.getArgument(0)));
+
+        predictConcurrently().forEach(result -> result.orTimeout(5, TimeUnit.SECONDS).join());
+
+        verify(client, times(2)).sendImagesToPrediction(argThat(images -> images.size() == 2));
+        verify(client, times(2)).sendImagesToPrediction(anyList());
+    }
+
+    /**
+     * Verifies that a failed batch call fails every request waiting for that batch.
+     */
+    @Test
+    void whenBatchFails_thenEveryCallerGetsTheError() {
+        startBatcher(CALLERS);
+        NeuralNetworkException failure = new NeuralNetworkException("Model is down", 500);
+        when(client.sendImagesToPrediction(anyList())).thenThrow(failure);
+
+        for (CompletableFuture<PredictionResponse> result : predictConcurrently()) {
+            CompletionException thrown = assertThrows(CompletionException.class,
+                    () -> result.orTimeout(5, TimeUnit.SECONDS).join());
+            assertSame(failure, thrown.getCause());
+        }
+        verify(client).sendImagesToPrediction(anyList());
+        verify(client, never()).sendImageToPrediction(any(Resource.class));
+    }
+
+    /**
+     * Verifies that a request queued after the collector stopped fails once the wait bound has passed instead of
+     * waiting forever.
+     */
+    @Test
+    void whenBatchIsNeverSent_thenRequestTimesOut() {
+        startBatcher(CALLERS);
+        ReflectionTestUtils.setField(batcher, "maxWaitMs", 50L);
+        ReflectionTestUtils.setField(batcher, "readTimeoutMs", 100L);
+        batcher.stop();
+        ReflectionTestUtils.setField(batcher, "running", true);
+
+        NeuralNetworkException e = assertThrows(NeuralNetworkException.class, () -> batcher.predict(image(0)));
+
+        assertEquals(504, e.getStatusCode());
+        verify(client, never()).sendImageToPrediction(any(Resource.class));
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the NeuralNetworkCircuitBreaker class.
+ */
+class NeuralNetworkCircuitBreakerTest {
+
+    private NeuralNetworkCircuitBreaker breaker(long openMs) {
+        return new NeuralNetworkCircuitBreaker(new SimpleMeterRegistry(), true, 10, 4, 0.5, 1.0, 60000, openMs, 2);
+    }
+
+    /**
+     * Verifies that the circuit opens after server errors and then fails fast without calling the model server.
+     */
+    @Test
+    void whenServerErrorsExceedThreshold_thenCircuitOpensAndFailsFast() {
+        NeuralNetworkCircuitBreaker breaker = breaker(60000);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(NeuralNetworkException.class, () -> breaker.execute(() -> {
+                throw new NeuralNetworkException("Model is down", 500);
+            }));
+        }
+        assertEquals(NeuralNetworkCircuitBreaker.State.OPEN, breaker.getState());
+
+        AtomicInteger calls = new AtomicInteger();
+        NeuralNetworkException e = assertThrows(NeuralNetworkException.class,
+                () -> breaker.execute(calls::incrementAndGet));
+        assertEquals(503, e.getStatusCode());
+        assertEquals(0, calls.get());
+    }
+
+    /**
+     * Verifies that client errors do not open the circuit.
+     */
+    @Test
+    void whenCallsFailWithClientErrors_thenCircuitStaysClosed() {
+        NeuralNetworkCircuitBreaker breaker = breaker(60000);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(NeuralNetworkException.class, () -> breaker.execute(() -> {
+                throw new NeuralNetworkException("Bad image", 422);
+            }));
+        }
+        assertEquals(NeuralNetworkCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Verifies that successful trial calls after the open period close the circuit again.
+     */
+    @Test
+    void whenTrialCallsSucceed_thenCircuitCloses() {
+        NeuralNetworkCircuitBreaker breaker = breaker(0);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(NeuralNetworkException.class, () -> breaker.execute(() -> {
+                throw new NeuralNetworkException("Model is down", 503);
+            }));
+        }
+        assertEquals(NeuralNetworkCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(NeuralNetworkCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.config.AppConfig;
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.github.dziodzi.simulator.NeuralNetworkSimulator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the NeuralNetworkClient class against the neural network simulator.
+ */
+class NeuralNetworkClientTest {
+
+    private NeuralNetworkSimulator simulator;
+
+    @AfterEach
+    void stopSimulator() {
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    private NeuralNetworkClient client(NeuralNetworkSimulator.Profile profile) throws Exception {
+        simulator = NeuralNetworkSimulator.start(profile);
+
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "clientType", "apache");
+        ReflectionTestUtils.setField(appConfig, "maxConnections", 10);
+        ReflectionTestUtils.setField(appConfig, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(appConfig, "readTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(appConfig, "poolTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(appConfig, "idleTimeoutMs", 5000L);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NeuralNetworkBackends backends = new NeuralNetworkBackends(meterRegistry, simulator.getBaseUrl(), "",
+                "/health", 1000, 5, 10000, 300000, 3.0);
+        NeuralNetworkCircuitBreaker circuitBreaker = new NeuralNetworkCircuitBreaker(meterRegistry, false,
+                50, 20, 0.5, 0.8, 5000, 10000, 3);
+        return new NeuralNetworkClient(new RestTemplate(appConfig.neuralNetworkRequestFactory(meterRegistry)),
+                backends, circuitBreaker, new ThreadPoolTaskExecutor(), null, meterRegistry);
+    }
+
+    private static Resource image(String name, byte seed) {
+        byte[] content = new byte[2048];
+        Arrays.fill(content, seed);
+        return new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return name;
+            }
+        };
+    }
+
+    /**
+     * Verifies that a prediction is parsed and that the same image always gets the same answer.
+     */
+    @Test
+    void whenModelAnswers_thenPredictionIsReturned() throws Exception {
+        NeuralNetworkClient client = client(NeuralNetworkSimulator.Profile.fast());
+
+        PredictionResponse first = client.sendImageToPrediction(image("face.png", (byte) 3));
+        PredictionResponse second = client.sendImageToPrediction(image("face.png", (byte) 3));
+
+        assertEquals("face.png", first.getImageName());
+        assertEquals(first, second);
+    }
+
+    /**
+     * Verifies that a batch call returns one prediction per image, in order.
+     */
+    @Test
+    void whenBatchIsSent_thenOnePredictionPerImageIsReturned() throws Exception {
+        NeuralNetworkClient client = client(NeuralNetworkSimulator.Profile.fast());
+
+        List<PredictionResponse> predictions = client.sendImagesToPrediction(
+                List.of(image("a.png", (byte) 1), image("b.png", (byte) 2), image("c.png", (byte) 3)));
+
+        assertEquals(List.of("a.png", "b.png", "c.png"),
+                predictions.stream().map(PredictionResponse::getImageName).toList());
+    }
+
+    /**
+     * Verifies that an error status of the model server is reported with the same status.
+     */
+    @Test
+    void whenModelRejectsImage_thenStatusIsPropagated() throws Exception {
+        NeuralNetworkClient client = client(NeuralNetworkSimulator.Profile.fast().error(422, 1.0));
+
+        NeuralNetworkException e = assertThrows(NeuralNetworkException.class,
+                () -> client.sendImageToPrediction(image("face.png", (byte) 3)));
+        assertEquals(422, e.getStatusCode());
+    }
+
+    /**
+     * Verifies that a dropped connection is reported as an unavailable model server.
+     */
+    @Test
+    void whenConnectionIsReset_thenModelIsUnavailable() throws Exception {
+        NeuralNetworkClient client = client(NeuralNetworkSimulator.Profile.fast().reset(1.0));
+
+        NeuralNetworkException e = assertThrows(NeuralNetworkException.class,
+                () -> client.sendImageToPrediction(image("face.png", (byte) 3)));
+        assertEquals(503, e.getStatusCode());
+    }
+
+    /**
+     * Verifies that failed calls are part of the latency distribution the adaptive timeout is built from.
+     */
+    @Test
+    void whenCallFails_thenItsLatencyIsRecorded() throws Exception {
+        NeuralNetworkClient client = client(NeuralNetworkSimulator.Profile.fast().reset(1.0));
+
+        assertThrows(NeuralNetworkException.class, () -> client.sendImageToPrediction(image("face.png", (byte) 3)));
+
+        LatencyPercentiles latencies = (LatencyPercentiles) ReflectionTestUtils.getField(client, "latencies");
+        assertEquals(1, latencies.count());
+    }
+}
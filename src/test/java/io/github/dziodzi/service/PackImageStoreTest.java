@@ -0,0 +1,177 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the PackImageStore class, with image rows counted per location in a map.
+ */
+class PackImageStoreTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private final ImageRepository imageRepository = mock(ImageRepository.class);
+    private PackImageStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(imageRepository.countByFilepath(anyString()))
+                .thenAnswer(invocation -> (long) references.getOrDefault(invocation.<String>getArgument(0), 0));
+        when(imageRepository.findReferencedFilepaths(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<String>>getArgument(0).stream()
+                        .filter(location -> references.getOrDefault(location, 0) > 0)
+                        .collect(Collectors.toSet()));
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        store.close();
+    }
+
+    private PackImageStore open() throws Exception {
+        return new PackImageStore(new ImageIngestor(8192, 2), imageRepository, new SimpleMeterRegistry(),
+                root.toString(), SEGMENT_SIZE, false, 0.5);
+    }
+
+    private static byte[] png(long seed, int size) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return content;
+    }
+
+    private Image store(byte[] content) throws Exception {
+        return store.store(new ByteArrayInputStream(content), stored -> {
+            references.merge(stored.location(), 1, Integer::sum);
+            return Image.builder().contentHash(stored.contentHash()).filepath(stored.location()).build();
+        });
+    }
+
+    private void release(Image image) {
+        store.release(image, () -> references.merge(image.getFilepath(), -1, Integer::sum));
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(root.resolve("packs"))) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".pack")).count();
+        }
+    }
+
+    /**
+     * Verifies that images are read back from the segment, that duplicates are stored once and that the staged
+     * uploads are removed.
+     */
+    @Test
+    void whenImagesAreStored_thenTheyAreReadFromTheSegment() throws Exception {
+        byte[] first = png(1, 100_000);
+        byte[] second = png(2, 50_000);
+
+        Image a = store(first);
+        Image b = store(second);
+        Image duplicate = store(first);
+
+        assertTrue(a.getFilepath().startsWith("pack:" + a.getContentHash()));
+        assertEquals(a.getFilepath(), duplicate.getFilepath());
+        assertArrayEquals(first, store.read(a).getContentAsByteArray());
+        assertArrayEquals(second, store.read(b).getInputStream().readAllBytes());
+        assertEquals(a.getContentHash() + ".png", store.read(a).getFilename());
+        assertEquals(1, segmentFiles());
+        try (Stream<Path> temporary = store.temporaryFiles()) {
+            assertEquals(0, temporary.count());
+        }
+    }
+
+    /**
+     * Verifies that the index is rebuilt from the segments after a restart.
+     */
+    @Test
+    void whenStoreIsReopened_thenImagesAreStillReadable() throws Exception {
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            images.add(store(png(i, 60_000)));
+        }
+        store.close();
+
+        store = open();
+
+        for (int i = 0; i < 30; i++) {
+            assertArrayEquals(png(i, 60_000), store.read(images.get(i)).getContentAsByteArray());
+        }
+        assertTrue(segmentFiles() > 1);
+    }
+
+    /**
+     * Verifies that compaction moves live images out of mostly deleted segments and removes those segments.
+     */
+    @Test
+    void whenMostImagesAreDeleted_thenCompactionReclaimsTheirSegments() throws Exception {
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            images.add(store(png(i, 60_000)));
+        }
+        long before = segmentFiles();
+        for (int i = 0; i < 40; i++) {
+            if (i % 8 != 0) {
+                release(images.get(i));
+            }
+        }
+
+        store.compact();
+
+        assertTrue(segmentFiles() < before);
+        for (int i = 0; i < 40; i += 8) {
+            assertArrayEquals(png(i, 60_000), store.read(images.get(i)).getContentAsByteArray());
+        }
+        assertThrows(NoSuchFileException.class, () -> store.read(images.get(1)));
+    }
+
+    /**
+     * Verifies that images deleted before a restart are dropped by the first compaction run.
+     */
+    @Test
+    void whenImageWasDeletedBeforeRestart_thenItIsDroppedAfterReopening() throws Exception {
+        Image kept = store(png(1, 10_000));
+        Image deleted = store(png(2, 10_000));
+        references.remove(deleted.getFilepath());
+        store.close();
+
+        store = open();
+        store.compact();
+
+        assertArrayEquals(png(1, 10_000), store.read(kept).getContentAsByteArray());
+        assertThrows(NoSuchFileException.class, () -> store.read(deleted));
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PageResponse;
+import io.github.dziodzi.exception.InvalidBodyException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the PageCursor class.
+ */
+class PageCursorTest {
+
+    /**
+     * Verifies that an encoded cursor decodes to the same position, including sub-second precision.
+     */
+    @Test
+    void whenCursorIsEncoded_thenItDecodesToTheSamePosition() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2026, 10, 18, 12, 0, 0, 123_456_000), "a|b");
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        assertNull(PageCursor.decode(null));
+    }
+
+    /**
+     * Verifies that tokens not issued by the server are rejected.
+     */
+    @Test
+    void whenTokenIsInvalid_thenItIsRejected() {
+        assertThrows(InvalidBodyException.class, () -> PageCursor.decode("not a cursor"));
+        assertThrows(InvalidBodyException.class, () -> PageCursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+
+    /**
+     * Verifies that the extra fetched row is dropped and the cursor points to the last returned row.
+     */
+    @Test
+    void whenMoreRowsThanPageSize_thenNextCursorPointsToLastItem() {
+        LocalDateTime now = LocalDateTime.of(2026, 10, 18, 12, 0);
+        List<String> rows = List.of("c", "b", "a");
+
+        PageResponse<String> page = PageCursor.page(rows, 2, id -> new PageCursor(now, id));
+        PageResponse<String> last = PageCursor.page(rows, 3, id -> new PageCursor(now, id));
+
+        assertEquals(List.of("c", "b"), page.getItems());
+        assertEquals(new PageCursor(now, "b"), PageCursor.decode(page.getNextCursor()));
+        assertEquals(rows, last.getItems());
+        assertNull(last.getNextCursor());
+    }
+}
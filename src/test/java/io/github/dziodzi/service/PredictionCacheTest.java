@@ -0,0 +1,114 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the PredictionCache class.
+ */
+class PredictionCacheTest {
+
+    /**
+     * Verifies that a cached prediction is returned without calling the loader again.
+     */
+    @Test
+    void whenHashIsCached_thenLoaderIsNotCalled() {
+        PredictionCache cache = new PredictionCache(10, true);
+        AtomicInteger calls = new AtomicInteger();
+        PredictionResponse prediction = new PredictionResponse();
+
+        cache.get("hash", () -> {
+            calls.incrementAndGet();
+            return prediction;
+        });
+        PredictionResponse second = cache.get("hash", () -> {
+            calls.incrementAndGet();
+            return new PredictionResponse();
+        });
+
+        assertSame(prediction, second);
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * Verifies that the least recently used entry is evicted once the cache is full.
+     */
+    @Test
+    void whenCacheIsFull_thenEldestEntryIsEvicted() {
+        PredictionCache cache = new PredictionCache(2, true);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get("a", PredictionResponse::new);
+        cache.get("b", PredictionResponse::new);
+        cache.get("c", PredictionResponse::new);
+        cache.get("a", () -> {
+            calls.incrementAndGet();
+            return new PredictionResponse();
+        });
+
+        assertEquals(2, cache.size());
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * Verifies that concurrent lookups of the same hash share a single loader call.
+     */
+    @Test
+    void whenSameHashIsRequestedConcurrently_thenLoaderIsCalledOnce() throws Exception {
+        PredictionCache cache = new PredictionCache(10, true);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<PredictionResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.get("hash", () -> {
+                calls.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new PredictionResponse();
+            })));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        PredictionResponse first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<PredictionResponse> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that a failed load is not cached, so the next request retries it.
+     */
+    @Test
+    void whenLoaderFails_thenFailureIsNotCached() {
+        PredictionCache cache = new PredictionCache(10, true);
+
+        assertThrows(NeuralNetworkException.class, () -> cache.get("hash", () -> {
+            throw new NeuralNetworkException("Model is down", 500);
+        }));
+        PredictionResponse prediction = new PredictionResponse();
+
+        assertSame(prediction, cache.get("hash", () -> prediction));
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import io.github.dziodzi.repository.ImageRepository;
+import io.github.dziodzi.repository.UserRepository;
+import io.github.dziodzi.repository.VerificationHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for shedding uploads in the ResultSenderService class.
+ */
+class ResultSenderServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+    @Mock
+    private VerificationHistoryRepository verificationHistoryRepository;
+    @Mock
+    private NeuralNetworkBatcher neuralNetworkBatcher;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PredictionCache predictionCache;
+    @Mock
+    private ImageStore imageStore;
+    @Mock
+    private ImagePreprocessor imagePreprocessor;
+    @Mock
+    private AdmissionLimiter admissionLimiter;
+    @Mock
+    private ThumbnailService thumbnailService;
+    @Mock
+    private VerificationAnalyticsService verificationAnalytics;
+
+    private ResultSenderService resultSender;
+    private final MockMultipartFile file = new MockMultipartFile("file", "face.png", "image/png", new byte[16]);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        resultSender = new ResultSenderService(imageRepository, verificationHistoryRepository, neuralNetworkBatcher,
+                userRepository, predictionCache, imageStore, imagePreprocessor, admissionLimiter, thumbnailService,
+                verificationAnalytics);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(User.builder().id(1L).build()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Verifies that a saturated limiter sheds the upload before anything is stored.
+     */
+    @Test
+    void whenLimiterIsSaturated_thenNothingIsStored() throws Exception {
+        doThrow(new TooManyRequestsException("Saturated", 1)).when(admissionLimiter).checkAdmission();
+
+        assertThrows(TooManyRequestsException.class, () -> resultSender.handleImageUpload(file, null));
+
+        verify(imageStore, never()).store(any(), any());
+    }
+
+    /**
+     * Verifies that an image stored for a verification that is shed afterwards is released again.
+     */
+    @Test
+    void whenVerificationIsShed_thenStoredImageIsReleased() throws Exception {
+        Image image = Image.builder().id("image-1").contentHash("hash").filepath("location").build();
+        when(imageStore.store(any(), any())).thenReturn(image);
+        when(predictionCache.get(eq("hash"), any())).thenThrow(new TooManyRequestsException("Saturated", 1));
+
+        assertThrows(TooManyRequestsException.class, () -> resultSender.handleImageUpload(file, null));
+
+        verify(imageStore).release(eq(image), any());
+        verify(verificationHistoryRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.exchange.StorageGcReport;
+import io.github.dziodzi.exception.NotFoundException;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the StorageGarbageCollector class, with a file store and image rows kept in a list.
+ */
+class StorageGarbageCollectorTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final FileTime LONG_AGO = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+
+    @TempDir
+    Path root;
+
+    private final List<Image> rows = new ArrayList<>();
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private FileImageStore store;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private StorageGarbageCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        ImageRepository imageRepository = mock(ImageRepository.class);
+        when(imageRepository.countByFilepath(anyString()))
+                .thenAnswer(invocation -> (long) references.getOrDefault(invocation.<String>getArgument(0), 0));
+        when(imageRepository.findReferencedFilepaths(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<String>>getArgument(0).stream()
+                        .filter(location -> references.getOrDefault(location, 0) > 0)
+                        .collect(Collectors.toSet()));
+        when(imageRepository.findByIdGreaterThanOrderByIdAsc(anyString(), any()))
+                .thenAnswer(invocation -> rows.stream()
+                        .filter(image -> image.getId().compareTo(invocation.getArgument(0)) > 0)
+                        .toList());
+
+        store = new FileImageStore(new ImageIngestor(8192, 2), imageRepository,
+                new SimpleMeterRegistry(), root.toString(), 2, 2);
+        executor.initialize();
+        collector = new StorageGarbageCollector(store, store, imageRepository, new SimpleMeterRegistry(), executor,
+                true, false, 60, 100, Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private static byte[] png(long seed) {
+        byte[] content = new byte[10_000];
+        new Random(seed).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return content;
+    }
+
+    private Path store(long seed, boolean referenced) throws Exception {
+        String location = store.store(new ByteArrayInputStream(png(seed)), stored -> {
+            if (referenced) {
+                references.merge(stored.location(), 1, Integer::sum);
+                rows.add(Image.builder().id("image-" + seed).contentHash(stored.contentHash())
+                        .filepath(stored.location()).build());
+            }
+            return stored.location();
+        });
+        Path path = Path.of(location);
+        Files.setLastModifiedTime(path, LONG_AGO);
+        return path;
+    }
+
+    /**
+     * Verifies that a dry run reports unreferenced content, stale temporary files and missing content
+     * without deleting anything.
+     */
+    @Test
+    void whenDryRun_thenNothingIsDeleted() throws Exception {
+        store(1, true);
+        Path orphan = store(2, false);
+        Path temporary = Files.createFile(root.resolve(".tmp").resolve("abandoned"));
+        Files.setLastModifiedTime(temporary, LONG_AGO);
+        rows.add(Image.builder().id("image-9").filepath(root.resolve("missing.png").toString()).build());
+
+        StorageGcReport report = collector.run(true);
+
+        assertEquals(2, report.getObjectsScanned());
+        assertEquals(1, report.getOrphansFound());
+        assertEquals(0, report.getOrphansDeleted());
+        assertEquals(1, report.getTemporaryFilesFound());
+        assertEquals(List.of("image-9"), report.getMissingImageIds());
+        assertTrue(Files.exists(orphan));
+        assertTrue(Files.exists(temporary));
+    }
+
+    /**
+     * Verifies that unreferenced content and temporary files past the grace period are deleted,
+     * while referenced and recent content is kept.
+     */
+    @Test
+    void whenContentIsUnreferencedPastGracePeriod_thenItIsDeleted() throws Exception {
+        Path referenced = store(1, true);
+        Path orphan = store(2, false);
+        Path recent = store(3, false);
+        Files.setLastModifiedTime(recent, FileTime.from(Instant.now()));
+        Path temporary = Files.createFile(root.resolve(".tmp").resolve("abandoned"));
+        Files.setLastModifiedTime(temporary, LONG_AGO);
+
+        StorageGcReport report = collector.run(false);
+
+        assertEquals(1, report.getOrphansDeleted());
+        assertEquals(1, report.getTemporaryFilesDeleted());
+        assertEquals(0, report.getRowsMissingContent());
+        assertTrue(Files.exists(referenced));
+        assertTrue(Files.exists(recent));
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(temporary));
+    }
+
+    /**
+     * Verifies that a run started in the background publishes its report once it is done.
+     */
+    @Test
+    void whenRunIsStarted_thenItsReportIsServedAfterwards() throws Exception {
+        Path orphan = store(2, false);
+        assertThrows(NotFoundException.class, collector::getLastReport);
+
+        collector.start(false);
+
+        executor.getThreadPoolExecutor().shutdown();
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+        StorageGcReport report = collector.getLastReport();
+        assertEquals(1, report.getOrphansDeleted());
+        assertNotNull(report.getFinishedAt());
+        assertFalse(Files.exists(orphan));
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.exception.InvalidBodyException;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for the ThumbnailService class, with images kept in a file store.
+ */
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path root;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+    private final AtomicInteger generations = new AtomicInteger();
+    private FileImageStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileImageStore(new ImageIngestor(8192, 2), mock(ImageRepository.class),
+                new SimpleMeterRegistry(), root.resolve("images").toString(), 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private ThumbnailService thumbnails(long maxBytes) {
+        return new ThumbnailService(store, task -> {
+            generations.incrementAndGet();
+            pool.execute(task);
+        }, new SimpleMeterRegistry(), root.resolve("thumbnails").toString(), List.of(64, 256),
+                maxBytes, "jpg", 0.8f, false, 10_000);
+    }
+
+    private Image image(long seed) throws Exception {
+        BufferedImage picture = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < picture.getHeight(); y++) {
+            for (int x = 0; x < picture.getWidth(); x++) {
+                picture.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", png);
+        return store.store(new ByteArrayInputStream(png.toByteArray()), stored -> Image.builder()
+                .id("image-" + seed).contentHash(stored.contentHash()).filepath(stored.location()).build());
+    }
+
+    /**
+     * Verifies that a thumbnail is scaled to the requested size and served from the cache afterwards.
+     */
+    @Test
+    void whenThumbnailIsRequested_thenItIsGeneratedOnceAndCached() throws Exception {
+        ThumbnailService service = thumbnails(1024 * 1024);
+        Image image = image(1);
+
+        Path thumbnail = service.get(image, 64);
+        Path again = service.get(image, 64);
+
+        BufferedImage decoded = ImageIO.read(thumbnail.toFile());
+        assertEquals(64, decoded.getWidth());
+        assertEquals(48, decoded.getHeight());
+        assertEquals(thumbnail, again);
+        assertEquals(1, generations.get());
+    }
+
+    /**
+     * Verifies that concurrent requests for the same missing thumbnail share one generation.
+     */
+    @Test
+    void whenThumbnailIsRequestedConcurrently_thenItIsGeneratedOnce() throws Exception {
+        ThumbnailService service = thumbnails(1024 * 1024);
+        Image image = image(2);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Path>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(clients.submit(() -> {
+                    start.await();
+                    return service.get(image, 256);
+                }));
+            }
+            start.countDown();
+            for (Future<Path> result : results) {
+                assertTrue(Files.exists(result.get()));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertEquals(1, generations.get());
+    }
+
+    /**
+     * Verifies that the least recently used thumbnails are deleted once the cache exceeds its size limit.
+     */
+    @Test
+    void whenCacheIsFull_thenLeastRecentlyUsedThumbnailsAreEvicted() throws Exception {
+        ThumbnailService probe = thumbnails(Long.MAX_VALUE);
+        long size = Files.size(probe.get(image(3), 256));
+        ThumbnailService service = thumbnails(size * 5 / 2);
+
+        Path first = service.get(image(4), 256);
+        Path second = service.get(image(5), 256);
+        service.get(image(4), 256);
+        service.get(image(6), 256);
+
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+    }
+
+    /**
+     * Verifies that sizes other than the configured ones are rejected.
+     */
+    @Test
+    void whenSizeIsNotConfigured_thenRequestIsRejected() throws Exception {
+        ThumbnailService service = thumbnails(1024 * 1024);
+        Image image = image(7);
+
+        assertThrows(InvalidBodyException.class, () -> service.get(image, 100));
+    }
+
+    /**
+     * Verifies that a cached thumbnail whose file disappeared is generated again instead of failing the read.
+     */
+    @Test
+    void whenCachedFileIsMissing_thenThumbnailIsGeneratedAgain() throws Exception {
+        ThumbnailService service = thumbnails(1024 * 1024);
+        Image image = image(8);
+        Files.delete(service.get(image, 64));
+
+        Resource thumbnail = service.read(image, 64);
+
+        assertEquals(image.getContentHash() + "-64.jpg", thumbnail.getFilename());
+        assertEquals(64, ImageIO.read(thumbnail.getInputStream()).getWidth());
+        assertEquals(2, generations.get());
+    }
+
+    /**
+     * Verifies that the entity tag is derived from the content hash and size without generating the thumbnail.
+     */
+    @Test
+    void whenEtagIsRequested_thenNothingIsGenerated() throws Exception {
+        ThumbnailService service = thumbnails(1024 * 1024);
+        Image image = image(9);
+
+        assertEquals(image.getContentHash() + "-256", service.etagOf(image, 256));
+        assertThrows(InvalidBodyException.class, () -> service.etagOf(image, 100));
+        assertEquals(0, generations.get());
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the TieredImageStore class, with a file store as the hot tier and image rows kept in a list.
+ */
+class TieredImageStoreTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @TempDir
+    Path hotRoot;
+
+    @TempDir
+    Path coldRoot;
+
+    private final List<Image> rows = new ArrayList<>();
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private FileImageStore hot;
+    private TieredImageStore store;
+
+    @BeforeEach
+    void setUp() {
+        ImageRepository imageRepository = mock(ImageRepository.class);
+        when(imageRepository.countByFilepath(anyString()))
+                .thenAnswer(invocation -> (long) references.getOrDefault(invocation.<String>getArgument(0), 0));
+        when(imageRepository.findLocationsUploadedBefore(any(), anyString(), any()))
+                .thenAnswer(invocation -> rows.stream().map(Image::getFilepath).distinct().toList());
+        when(imageRepository.findFirstByFilepath(anyString()))
+                .thenAnswer(invocation -> rows.stream()
+                        .filter(image -> image.getFilepath().equals(invocation.getArgument(0)))
+                        .findFirst());
+        when(imageRepository.relocate(anyString(), anyString())).thenAnswer(invocation -> {
+            String from = invocation.getArgument(0);
+            String to = invocation.getArgument(1);
+            int moved = Optional.ofNullable(references.remove(from)).orElse(0);
+            references.merge(to, moved, Integer::sum);
+            rows.stream().filter(image -> image.getFilepath().equals(from)).forEach(image -> image.setFilepath(to));
+            return moved;
+        });
+
+        hot = new FileImageStore(new ImageIngestor(8192, 2), imageRepository,
+                new SimpleMeterRegistry(), hotRoot.toString(), 2, 2);
+        ColdImageTier cold = new ColdImageTier(coldRoot.toString(), 6);
+        store = new TieredImageStore(hot, cold, imageRepository, new SimpleMeterRegistry(), 0, 10, Long.MAX_VALUE);
+    }
+
+    private static byte[] png(long seed) {
+        byte[] content = new byte[10_000];
+        new Random(seed).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return content;
+    }
+
+    private Image store(byte[] content) throws Exception {
+        return store.store(new ByteArrayInputStream(content), stored -> {
+            references.merge(stored.location(), 1, Integer::sum);
+            Image image = Image.builder().contentHash(stored.contentHash()).filepath(stored.location()).build();
+            rows.add(image);
+            return image;
+        });
+    }
+
+    private long coldFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(coldRoot)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    /**
+     * Verifies that old images are moved to the cold tier, read back unchanged and removed from the hot tier.
+     */
+    @Test
+    void whenImageIsOlderThanMinAge_thenItIsMovedToTheColdTier() throws Exception {
+        byte[] content = png(1);
+        Image first = store(content);
+        Image duplicate = store(content);
+        Path hotFile = Path.of(first.getFilepath());
+
+        store.moveToColdTier();
+
+        assertTrue(first.getFilepath().startsWith(ColdImageTier.LOCATION_PREFIX));
+        assertEquals(first.getFilepath(), duplicate.getFilepath());
+        assertFalse(Files.exists(hotFile));
+        assertEquals(1, coldFiles());
+        assertArrayEquals(content, store.read(first).getContentAsByteArray());
+        assertEquals(content.length, store.read(first).contentLength());
+        assertEquals(first.getContentHash() + ".png", store.read(first).getFilename());
+    }
+
+    /**
+     * Verifies that the cold copy is deleted together with the last row pointing to it.
+     */
+    @Test
+    void whenLastColdImageIsReleased_thenTheColdCopyIsDeleted() throws Exception {
+        Image first = store(png(2));
+        Image duplicate = store(png(2));
+        store.moveToColdTier();
+
+        store.release(first, () -> references.merge(first.getFilepath(), -1, Integer::sum));
+        assertEquals(1, coldFiles());
+
+        store.release(duplicate, () -> references.merge(duplicate.getFilepath(), -1, Integer::sum));
+        assertEquals(0, coldFiles());
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.Image;
+import io.github.dziodzi.entity.Role;
+import io.github.dziodzi.entity.UploadJobStatus;
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.exchange.PredictionResponse;
+import io.github.dziodzi.entity.exchange.UploadJobResponse;
+import io.github.dziodzi.exception.NeuralNetworkException;
+import io.github.dziodzi.exception.NotFoundException;
+import io.github.dziodzi.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the UploadJobService class.
+ * The worker pool is replaced by a mock that runs submitted tasks on the calling thread.
+ */
+class UploadJobServiceTest {
+
+    @Mock
+    private ResultSenderService resultSender;
+
+    @Mock
+    private AdmissionLimiter admissionLimiter;
+
+    @Mock
+    private ThreadPoolTaskExecutor uploadJobExecutor;
+
+    private UploadJobService uploadJobService;
+
+    private final Image image = Image.builder().id("image-1").filepath("/tmp/image-1.png").uploadDate(LocalDateTime.now()).build();
+    private final User owner = User.builder().id(1L).username("owner").role(Role.USER).build();
+
+    /**
+     * Initializes the mocks and makes the executor run tasks synchronously.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(uploadJobExecutor).execute(any(Runnable.class));
+        uploadJobService = new UploadJobService(resultSender, admissionLimiter, uploadJobExecutor);
+    }
+
+    /**
+     * Verifies that a successful verification completes the job with the prediction attached.
+     */
+    @Test
+    void whenVerificationSucceeds_thenJobIsDoneWithResult() throws Exception {
+        PredictionResponse prediction = new PredictionResponse();
+        when(resultSender.verifyImage(image, owner)).thenReturn(prediction);
+
+        UploadJobResponse submitted = uploadJobService.submit(image, owner);
+        UploadJobResponse job = uploadJobService.getJob(submitted.getJobId(), owner);
+
+        assertEquals(UploadJobStatus.DONE, job.getStatus());
+        assertSame(prediction, job.getResult());
+        assertEquals("image-1", job.getImageId());
+    }
+
+    /**
+     * Verifies that a failing verification marks the job as failed and keeps the error message.
+     */
+    @Test
+    void whenVerificationFails_thenJobIsFailed() throws Exception {
+        when(resultSender.verifyImage(image, owner)).thenThrow(new NeuralNetworkException("Model is down", 500));
+
+        UploadJobResponse submitted = uploadJobService.submit(image, owner);
+        UploadJobResponse job = uploadJobService.getJob(submitted.getJobId(), owner);
+
+        assertEquals(UploadJobStatus.FAILED, job.getStatus());
+        assertEquals("Model is down", job.getError());
+    }
+
+    /**
+     * Verifies that a user cannot see jobs submitted by somebody else, while an admin can.
+     */
+    @Test
+    void whenJobBelongsToAnotherUser_thenOnlyAdminCanSeeIt() throws Exception {
+        when(resultSender.verifyImage(image, owner)).thenReturn(new PredictionResponse());
+        UploadJobResponse submitted = uploadJobService.submit(image, owner);
+
+        User stranger = User.builder().id(2L).username("stranger").role(Role.USER).build();
+        User admin = User.builder().id(3L).username("admin").role(Role.ADMIN).build();
+
+        assertThrows(NotFoundException.class, () -> uploadJobService.getJob(submitted.getJobId(), stranger));
+        assertEquals(submitted.getJobId(), uploadJobService.getJob(submitted.getJobId(), admin).getJobId());
+    }
+
+    /**
+     * Verifies that a rejected submission leaves neither a dangling job nor an orphaned image behind.
+     */
+    @Test
+    void whenExecutorRejects_thenJobIsNotRegistered() {
+        doThrow(new TaskRejectedException("full")).when(uploadJobExecutor).execute(any(Runnable.class));
+
+        assertThrows(TaskRejectedException.class, () -> uploadJobService.submit(image, owner));
+
+        Map<?, ?> jobs = (Map<?, ?>) ReflectionTestUtils.getField(uploadJobService, "jobs");
+        assertTrue(jobs.isEmpty());
+        verify(resultSender).discard(image);
+    }
+
+    /**
+     * Verifies that an upload is refused with 429 before it is stored when the neural network is saturated.
+     */
+    @Test
+    void whenLimiterIsSaturated_thenUploadIsNotStored() throws Exception {
+        when(resultSender.getCurrentUser()).thenReturn(owner);
+        doThrow(new TooManyRequestsException("Saturated", 1)).when(admissionLimiter).checkAdmission();
+
+        assertThrows(TooManyRequestsException.class, () -> uploadJobService.handleImageUpload(
+                new MockMultipartFile("file", "face.png", "image/png", new byte[16])));
+
+        verify(resultSender, never()).storeImage(any());
+    }
+
+    /**
+     * Verifies that a job whose verification is shed fails and discards its image.
+     */
+    @Test
+    void whenVerificationIsShed_thenJobFailsAndImageIsDiscarded() throws Exception {
+        when(resultSender.verifyImage(image, owner)).thenThrow(new TooManyRequestsException("Saturated", 1));
+
+        UploadJobResponse submitted = uploadJobService.submit(image, owner);
+
+        assertEquals(UploadJobStatus.FAILED, uploadJobService.getJob(submitted.getJobId(), owner).getStatus());
+        verify(resultSender).discard(image);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.dziodzi.service;
+
+import io.github.dziodzi.entity.User;
+import io.github.dziodzi.entity.VerificationHistory;
+import io.github.dziodzi.entity.exchange.VerificationAnalytics;
+import io.github.dziodzi.repository.VerificationRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the VerificationAnalyticsService class, with a mocked rollup repository.
+ */
+class VerificationAnalyticsServiceTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 10, 18, 12, 0);
+
+    private final VerificationRollupRepository repository = mock(VerificationRollupRepository.class);
+    private VerificationAnalyticsService analytics;
+
+    @BeforeEach
+    void setUp() {
+        analytics = new VerificationAnalyticsService(repository, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 10, 0.5);
+    }
+
+    private static VerificationHistory history(int minute, double fakeProbability) {
+        return history(HOUR.plusMinutes(minute), fakeProbability);
+    }
+
+    private static VerificationHistory history(LocalDateTime date, double fakeProbability) {
+        return VerificationHistory.builder()
+                .user(User.builder().id(7L).build())
+                .verificationDate(date)
+                .fakeProbability(fakeProbability)
+                .build();
+    }
+
+    private static VerificationRollupRepository.Totals totals(LocalDateTime hour, int bucket, long verifications,
+                                                              long fakes) {
+        return new VerificationRollupRepository.Totals() {
+            public LocalDateTime getBucketStart() {
+                return hour;
+            }
+
+            public Integer getProbabilityBucket() {
+                return bucket;
+            }
+
+            public long getVerifications() {
+                return verifications;
+            }
+
+            public long getFakes() {
+                return fakes;
+            }
+        };
+    }
+
+    /**
+     * Verifies that verifications of the same hour, user and bucket are written as one increment per flush.
+     */
+    @Test
+    void whenVerificationsAreRecorded_thenTheyAreFlushedAsOneIncrementPerRollupRow() {
+        analytics.record(history(1, 0.95));
+        analytics.record(history(30, 0.97));
+        analytics.record(history(59, 0.2));
+
+        analytics.flush();
+        analytics.flush();
+
+        verify(repository).increment(HOUR, 7L, 9, 2, 2);
+        verify(repository).increment(HOUR, 7L, 2, 1, 0);
+        verify(repository, times(2)).increment(any(), any(), anyInt(), anyLong(), anyLong());
+    }
+
+    /**
+     * Verifies that counts whose increment fails are written by the next flush, and only once.
+     */
+    @Test
+    void whenFlushFails_thenCountsAreWrittenByTheNextFlush() {
+        when(repository.increment(any(), any(), anyInt(), anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("Database is down"))
+                .thenReturn(1);
+        analytics.record(history(1, 0.95));
+        analytics.record(history(2, 0.96));
+
+        analytics.flush();
+        analytics.flush();
+        analytics.flush();
+
+        verify(repository, times(2)).increment(HOUR, 7L, 9, 2, 2);
+        verify(repository, times(2)).increment(any(), any(), anyInt(), anyLong(), anyLong());
+    }
+
+    /**
+     * Verifies that a rebuild drops the pending counts of the hours it recomputes and keeps those of the current
+     * hour.
+     */
+    @Test
+    void whenRollupsAreRebuilt_thenOnlyCountsOfTheCurrentHourAreStillFlushed() {
+        LocalDateTime now = LocalDateTime.now();
+        analytics.record(history(now.minusHours(3), 0.95));
+        analytics.record(history(now, 0.95));
+
+        analytics.rebuild();
+        analytics.flush();
+
+        verify(repository).rebuildFromHistory(any(), eq(10), eq(0.5));
+        verify(repository).increment(now.truncatedTo(ChronoUnit.HOURS), 7L, 9, 1, 1);
+        verify(repository).increment(any(), any(), anyInt(), anyLong(), anyLong());
+    }
+
+    /**
+     * Verifies that hourly rollups are summed into daily points, totals and the probability histogram.
+     */
+    @Test
+    void whenRangeIsQueriedByDay_thenHourlyRollupsAreSummed() {
+        LocalDateTime nextDay = HOUR.plusDays(1);
+        when(repository.sumByHourForUser(HOUR.minusHours(12), HOUR.plusDays(2), 7L)).thenReturn(List.of(
+                totals(HOUR, 9, 3, 3),
+                totals(HOUR.plusHours(1), 1, 1, 0),
+                totals(nextDay, 9, 4, 4)));
+
+        VerificationAnalytics result = analytics.query(HOUR.minusHours(12), HOUR.plusDays(2), 7L, "day");
+
+        assertEquals(8, result.getVerifications());
+        assertEquals(7, result.getFakes());
+        assertEquals(List.of(0L, 1L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 7L), result.getProbabilityHistogram());
+        assertEquals(List.of(
+                new VerificationAnalytics.Point(HOUR.minusHours(12), 4, 3, 0.75),
+                new VerificationAnalytics.Point(nextDay.minusHours(12), 4, 4, 1.0)), result.getSeries());
+    }
+}
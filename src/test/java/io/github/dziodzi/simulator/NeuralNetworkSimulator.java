@@ -0,0 +1,390 @@
+package io.github.dziodzi.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the PyTorch/Flask model server implementing the {@code /predict}, {@code /predict/batch}
+ * and {@code /health} contract on the JDK HTTP server.
+ * Every response is delayed by a sample from the configured latency distribution, and a share of
+ * requests can fail with a given status, drip the response body slowly or drop the connection.
+ * Predictions are derived from the uploaded bytes, so the same image always gets the same answer.
+ *
+ * <p>Start it from tests with {@link #start(Profile)}, or standalone with
+ * {@code ./gradlew nnSimulator -PsimArgs="--port=5001 --latency=lognormal:80,0.5 --errors=500:0.02"}.
+ */
+public class NeuralNetworkSimulator implements AutoCloseable {
+
+    private static final Pattern FILENAME = Pattern.compile("filename=\"([^\"]*)\"");
+    private static final byte[] FILE_PART = "name=\"file".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final HttpServer server;
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "nn-simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Profile profile;
+    private final Random random;
+    private final LongAdder requests = new LongAdder();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    private NeuralNetworkSimulator(Profile profile) throws IOException {
+        this.profile = profile;
+        this.random = new Random(profile.seed);
+        this.server = HttpServer.create(new InetSocketAddress(profile.port), 1024);
+        server.createContext("/predict", exchange -> handlePredict(exchange, false));
+        server.createContext("/predict/batch", exchange -> handlePredict(exchange, true));
+        server.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8)));
+        server.setExecutor(workers);
+    }
+
+    public static NeuralNetworkSimulator start(Profile profile) throws IOException {
+        NeuralNetworkSimulator simulator = new NeuralNetworkSimulator(profile);
+        simulator.server.start();
+        return simulator;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Profile profile = Profile.parse(args);
+        NeuralNetworkSimulator simulator = start(profile);
+        System.out.println("Neural network simulator listening on " + simulator.getBaseUrl() + " with " + profile);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            simulator.close();
+            System.out.println("Served " + simulator.getRequestCount() + " requests: " + simulator.getOutcomes());
+        }));
+        Thread.currentThread().join();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return how many requests ended with each outcome: a status code, "slow-drip" or "reset"
+     */
+    public Map<String, Long> getOutcomes() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        outcomes.forEach((outcome, count) -> snapshot.put(outcome, count.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handlePredict(HttpExchange exchange, boolean batch) throws IOException {
+        requests.increment();
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, new byte[0]);
+            return;
+        }
+
+        double roll;
+        long latencyMs;
+        synchronized (random) {
+            roll = random.nextDouble();
+            latencyMs = profile.latency.sampleMillis(random);
+        }
+        sleep(latencyMs);
+
+        if (roll < profile.resetRate) {
+            record("reset");
+            exchange.close();
+            return;
+        }
+        roll -= profile.resetRate;
+        for (Map.Entry<Integer, Double> error : profile.errorRates.entrySet()) {
+            if (roll < error.getValue()) {
+                respond(exchange, error.getKey(), ("{\"error\":\"Simulated " + error.getKey() + "\"}")
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            roll -= error.getValue();
+        }
+
+        List<String> predictions = new ArrayList<>();
+        for (Part part : parts(body)) {
+            predictions.add(prediction(part, body));
+        }
+        String json = batch ? "[" + String.join(",", predictions) + "]" : predictions.get(0);
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+
+        if (roll < profile.slowDripRate) {
+            record("slow-drip");
+            drip(exchange, response);
+        } else {
+            respond(exchange, 200, response);
+        }
+    }
+
+    private String prediction(Part part, byte[] body) {
+        int hash = 17;
+        int step = Math.max(1, (part.end - part.start) / 4096);
+        for (int i = part.start; i < part.end; i += step) {
+            hash = hash * 31 + body[i];
+        }
+        double fakeProbability = (hash & 0xFFFF) / 65535.0;
+        int predictedClass = fakeProbability >= 0.5 ? 1 : 0;
+        return String.format(Locale.ROOT,
+                "{\"class\":%d,\"class_description\":\"%s\",\"fake_probability\":%.4f,\"image_name\":\"%s\"}",
+                predictedClass, predictedClass == 1 ? "fake" : "real", fakeProbability, part.filename.replace("\"", ""));
+    }
+
+    private record Part(String filename, int start, int end) {
+    }
+
+    /**
+     * Uploaded file parts of the multipart body; an image without a name in its part header still counts.
+     */
+    private static List<Part> parts(byte[] body) {
+        List<Part> parts = new ArrayList<>();
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        int from = 0;
+        while (true) {
+            int header = indexOf(body, FILE_PART, from);
+            if (header < 0) {
+                break;
+            }
+            int lineEnd = text.indexOf('\n', header);
+            Matcher matcher = FILENAME.matcher(text.substring(header, lineEnd < 0 ? text.length() : lineEnd));
+            int start = text.indexOf("\r\n\r\n", header);
+            start = start < 0 ? body.length : start + 4;
+            int end = text.indexOf("\r\n--", start);
+            end = end < 0 ? body.length : end;
+            parts.add(new Part(matcher.find() ? matcher.group(1) : "image", start, end));
+            from = end;
+        }
+        if (parts.isEmpty()) {
+            parts.add(new Part("image", 0, body.length));
+        }
+        return parts;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] response) throws IOException {
+        record(String.valueOf(status));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    /**
+     * Sends the body a few bytes at a time, spread over the configured drip duration.
+     */
+    private void drip(HttpExchange exchange, byte[] response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        int chunks = Math.max(1, Math.min(response.length, 20));
+        int chunkSize = (response.length + chunks - 1) / chunks;
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int offset = 0; offset < response.length; offset += chunkSize) {
+                out.write(response, offset, Math.min(chunkSize, response.length - offset));
+                out.flush();
+                sleep(profile.dripMillis / chunks);
+            }
+        }
+    }
+
+    private void record(String outcome) {
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Latency and fault profile of the simulator. Fault rates are probabilities between 0 and 1 and
+     * apply in this order: connection reset, error statuses, slow drip.
+     */
+    public static final class Profile {
+
+        private int port;
+        private long seed = 42;
+        private LatencyDistribution latency = LatencyDistribution.fixed(0);
+        private final Map<Integer, Double> errorRates = new LinkedHashMap<>();
+        private double slowDripRate;
+        private long dripMillis = 2000;
+        private double resetRate;
+
+        public static Profile fast() {
+            return new Profile();
+        }
+
+        /**
+         * Parses command line options: {@code --port=5001 --seed=42 --latency=fixed:50|lognormal:80,0.5|bimodal:50,2000,0.05
+         * --errors=500:0.02,422:0.01 --slow-drip=0.01 --drip-ms=2000 --reset=0.005}.
+         */
+        public static Profile parse(String[] args) {
+            Profile profile = new Profile().port(5001);
+            for (String arg : args) {
+                String[] option = arg.replaceFirst("^--", "").split("=", 2);
+                String value = option.length > 1 ? option[1] : "";
+                switch (option[0]) {
+                    case "port" -> profile.port(Integer.parseInt(value));
+                    case "seed" -> profile.seed(Long.parseLong(value));
+                    case "latency" -> profile.latency(LatencyDistribution.parse(value));
+                    case "errors" -> {
+                        for (String error : value.split(",")) {
+                            String[] rate = error.split(":");
+                            profile.error(Integer.parseInt(rate[0].trim()), Double.parseDouble(rate[1].trim()));
+                        }
+                    }
+                    case "slow-drip" -> profile.slowDrip(Double.parseDouble(value), profile.dripMillis);
+                    case "drip-ms" -> profile.slowDrip(profile.slowDripRate, Long.parseLong(value));
+                    case "reset" -> profile.reset(Double.parseDouble(value));
+                    default -> throw new IllegalArgumentException("Unknown simulator option " + arg);
+                }
+            }
+            return profile;
+        }
+
+        public Profile port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Profile seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Profile latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        public Profile error(int status, double rate) {
+            errorRates.put(status, rate);
+            return this;
+        }
+
+        public Profile slowDrip(double rate, long dripMillis) {
+            this.slowDripRate = rate;
+            this.dripMillis = dripMillis;
+            return this;
+        }
+
+        public Profile reset(double rate) {
+            this.resetRate = rate;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "latency=" + latency + ", errors=" + errorRates + ", slowDrip=" + slowDripRate
+                    + " over " + dripMillis + "ms, reset=" + resetRate + ", seed=" + seed;
+        }
+    }
+
+    /**
+     * Distribution of the simulated model latency in milliseconds.
+     */
+    public interface LatencyDistribution {
+
+        long sampleMillis(Random random);
+
+        static LatencyDistribution fixed(long millis) {
+            return describe(random -> millis, "fixed(" + millis + "ms)");
+        }
+
+        /**
+         * Log-normal latency, the usual shape of service response times: most calls near the median
+         * with a long right tail controlled by sigma.
+         */
+        static LatencyDistribution lognormal(double medianMillis, double sigma) {
+            return describe(random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian())),
+                    "lognormal(median=" + medianMillis + "ms, sigma=" + sigma + ")");
+        }
+
+        /**
+         * Mostly fast calls with a share of slow ones, e.g. cold model replicas or garbage collection pauses.
+         */
+        static LatencyDistribution bimodal(double fastMillis, double slowMillis, double slowShare) {
+            LatencyDistribution fast = lognormal(fastMillis, 0.2);
+            LatencyDistribution slow = lognormal(slowMillis, 0.2);
+            return describe(random -> random.nextDouble() < slowShare ? slow.sampleMillis(random) : fast.sampleMillis(random),
+                    "bimodal(fast=" + fastMillis + "ms, slow=" + slowMillis + "ms, slowShare=" + slowShare + ")");
+        }
+
+        static LatencyDistribution parse(String spec) {
+            String[] parts = spec.split(":", 2);
+            String[] params = parts.length > 1 ? parts[1].split(",") : new String[0];
+            return switch (parts[0]) {
+                case "fixed" -> fixed(Long.parseLong(params[0]));
+                case "lognormal" -> lognormal(Double.parseDouble(params[0]), Double.parseDouble(params[1]));
+                case "bimodal" -> bimodal(Double.parseDouble(params[0]), Double.parseDouble(params[1]),
+                        Double.parseDouble(params[2]));
+                default -> throw new IllegalArgumentException("Unknown latency distribution " + spec);
+            };
+        }
+
+        private static LatencyDistribution describe(LatencyDistribution distribution, String description) {
+            return new LatencyDistribution() {
+                @Override
+                public long sampleMillis(Random random) {
+                    return Math.max(0, distribution.sampleMillis(random));
+                }
+
+                @Override
+                public String toString() {
+                    return description;
+                }
+            };
+        }
+    }
+}
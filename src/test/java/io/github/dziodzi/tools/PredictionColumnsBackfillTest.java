@@ -0,0 +1,36 @@
+package io.github.dziodzi.tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for parsing the formatted results in the PredictionColumnsBackfill class.
+ */
+class PredictionColumnsBackfillTest {
+
+    /**
+     * Verifies that results written with a decimal point or a decimal comma are both parsed.
+     */
+    @Test
+    void whenResultIsFormatted_thenDescriptionAndProbabilityAreParsed() {
+        PredictionColumnsBackfill.ParsedResult point =
+                PredictionColumnsBackfill.parse("class_description: fake, fake_probability: 0.912");
+        PredictionColumnsBackfill.ParsedResult comma =
+                PredictionColumnsBackfill.parse("class_description: real, photo, fake_probability: 0,125");
+
+        assertEquals(new PredictionColumnsBackfill.ParsedResult("fake", 0.912), point);
+        assertEquals(new PredictionColumnsBackfill.ParsedResult("real, photo", 0.125), comma);
+    }
+
+    /**
+     * Verifies that results of any other shape are left for manual inspection.
+     */
+    @Test
+    void whenResultHasAnotherShape_thenItIsNotParsed() {
+        assertNull(PredictionColumnsBackfill.parse("fake"));
+        assertNull(PredictionColumnsBackfill.parse("class_description: fake, fake_probability: high"));
+        assertNull(PredictionColumnsBackfill.parse(null));
+    }
+}